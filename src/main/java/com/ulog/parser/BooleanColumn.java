@@ -0,0 +1,65 @@
+package com.ulog.parser;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class BooleanColumn extends Column {
+
+	final boolean[] values;
+
+	public BooleanColumn(FieldData field, int size) {
+		super(field, size);
+		this.values = new boolean[size];
+	}
+
+	private BooleanColumn(FieldData field, boolean[] values, int offset, int size) {
+		super(field, offset, size);
+		this.values = values;
+	}
+
+	public boolean getBoolean(int index) {
+		return this.values[this.offset + index];
+	}
+
+	// Backing array, shared with slices; the values of this column start at getOffset()
+	public boolean[] getValues() {
+		return this.values;
+	}
+
+	@Override
+	public BooleanColumn slice(int from, int to) {
+		checkSlice(from, to);
+		return new BooleanColumn(this.field, this.values, this.offset + from, to - from);
+	}
+
+	@Override
+	BooleanColumn grow(int size) {
+		boolean[] values = this.values;
+		if (this.offset + size > values.length) {
+			values = Arrays.copyOf(values, Math.max(this.offset + size, values.length + (values.length >> 1)));
+		}
+		return new BooleanColumn(this.field, values, this.offset, size);
+	}
+
+	@Override
+	void putValues(ByteBuffer target, int from, int to) {
+		for (int i = this.offset + from; i < this.offset + to; i++) {
+			target.put(this.values[i] ? (byte) 1 : (byte) 0);
+		}
+	}
+
+	@Override
+	public Object get(int index) {
+		return this.values[this.offset + index];
+	}
+
+	@Override
+	public void appendTo(StringBuilder target, int index) {
+		target.append(this.values[this.offset + index]);
+	}
+
+	@Override
+	public double getDouble(int index) {
+		return this.values[this.offset + index] ? 1 : 0;
+	}
+}
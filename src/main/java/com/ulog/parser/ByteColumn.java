@@ -0,0 +1,90 @@
+package com.ulog.parser;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class ByteColumn extends Column {
+
+	final byte[] values;
+
+	public ByteColumn(FieldData field, int size) {
+		super(field, size);
+		this.values = new byte[size];
+	}
+
+	private ByteColumn(FieldData field, byte[] values, int offset, int size) {
+		super(field, offset, size);
+		this.values = values;
+	}
+
+	public byte getByte(int index) {
+		return this.values[this.offset + index];
+	}
+
+	public int getInt(int index) {
+		if (this.typeChar == 'B') {
+			return Byte.toUnsignedInt(this.values[this.offset + index]);
+		}
+		return this.values[this.offset + index];
+	}
+
+	// Backing array, shared with slices; the values of this column start at getOffset()
+	public byte[] getValues() {
+		return this.values;
+	}
+
+	@Override
+	public ByteColumn slice(int from, int to) {
+		checkSlice(from, to);
+		return new ByteColumn(this.field, this.values, this.offset + from, to - from);
+	}
+
+	@Override
+	ByteColumn grow(int size) {
+		byte[] values = this.values;
+		if (this.offset + size > values.length) {
+			values = Arrays.copyOf(values, Math.max(this.offset + size, values.length + (values.length >> 1)));
+		}
+		return new ByteColumn(this.field, values, this.offset, size);
+	}
+
+	@Override
+	void putValues(ByteBuffer target, int from, int to) {
+		target.put(this.values, this.offset + from, to - from);
+	}
+
+	@Override
+	public Object get(int index) {
+		switch (this.typeChar) {
+		case 'B':
+			return Byte.toUnsignedInt(this.values[this.offset + index]);
+		case 'c':
+			return (char) this.values[this.offset + index];
+		default:
+			return this.values[this.offset + index];
+		}
+	}
+
+	@Override
+	public void appendTo(StringBuilder target, int index) {
+		switch (this.typeChar) {
+		case 'B':
+			target.append(Byte.toUnsignedInt(this.values[this.offset + index]));
+			break;
+		case 'c':
+			target.append((char) this.values[this.offset + index]);
+			break;
+		default:
+			target.append(this.values[this.offset + index]);
+			break;
+		}
+	}
+
+	@Override
+	public double getDouble(int index) {
+		if (this.typeChar == 'c') {
+			return (char) this.values[this.offset + index];
+		}
+		return getInt(index);
+	}
+}
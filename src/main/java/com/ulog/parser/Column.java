@@ -0,0 +1,119 @@
+package com.ulog.parser;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.List;
+
+public abstract class Column {
+
+	protected final FieldData field;
+	protected final char typeChar;
+	protected final int offset;
+	protected final int size;
+
+	protected Column(FieldData field, int size) {
+		this(field, 0, size);
+	}
+
+	protected Column(FieldData field, int offset, int size) {
+		this.field = field;
+		this.typeChar = (char) ULogUtils.UNPACK_TYPES.get(field.getTypeStr())[0];
+		this.offset = offset;
+		this.size = size;
+	}
+
+	public static Column create(FieldData field, int size) {
+		Object[] typeInfo = ULogUtils.UNPACK_TYPES.get(field.getTypeStr());
+		if (typeInfo == null) {
+			throw new IllegalArgumentException("Unsupported data type: " + field.getTypeStr());
+		}
+		char typeChar = (char) typeInfo[0];
+		switch (typeChar) {
+		case 'b':
+		case 'B':
+		case 'c':
+			return new ByteColumn(field, size);
+		case 'h':
+		case 'H':
+			return new ShortColumn(field, size);
+		case 'i':
+		case 'I':
+			return new IntColumn(field, size);
+		case 'q':
+		case 'Q':
+			return new LongColumn(field, size);
+		case 'f':
+			return new FloatColumn(field, size);
+		case 'd':
+			return new DoubleColumn(field, size);
+		case '?':
+			return new BooleanColumn(field, size);
+		default:
+			throw new IllegalArgumentException("Unknown type character: " + typeChar);
+		}
+	}
+
+	public FieldData getField() {
+		return this.field;
+	}
+
+	public String getName() {
+		return this.field.getFieldName();
+	}
+
+	public String getTypeStr() {
+		return this.field.getTypeStr();
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public int getOffset() {
+		return this.offset;
+	}
+
+	// View of the values in [from, to) that shares the backing array
+	public abstract Column slice(int from, int to);
+
+	// Column of the given size, at least the current one, whose first values are those of this column. The
+	// backing array is shared while it has room and otherwise copied to a larger one, so a column that is grown
+	// repeatedly copies its values only a few times. Only the added values are written afterwards, so this
+	// column and its slices keep their values.
+	abstract Column grow(int size);
+
+	protected void checkSlice(int from, int to) {
+		if (from < 0 || to > this.size || from > to) {
+			throw new IndexOutOfBoundsException("Slice [" + from + ", " + to + ") of column with size " + this.size);
+		}
+	}
+
+	// Writes the values in [from, to) to target at its position, in its byte order and with the width of the ULog
+	// type (one byte per bool), advancing the position
+	abstract void putValues(ByteBuffer target, int from, int to);
+
+	// Boxed value, using the same boxed types the data map has always returned
+	public abstract Object get(int index);
+
+	public abstract double getDouble(int index);
+
+	// Appends the same text as get(index).toString(), without boxing the value
+	public abstract void appendTo(StringBuilder target, int index);
+
+	public List<Object> asList() {
+		return new AbstractList<Object>() {
+			@Override
+			public Object get(int index) {
+				if (index < 0 || index >= Column.this.size) {
+					throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + Column.this.size);
+				}
+				return Column.this.get(index);
+			}
+
+			@Override
+			public int size() {
+				return Column.this.size;
+			}
+		};
+	}
+}
@@ -1,7 +1,10 @@
 package com.ulog.parser;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.util.AbstractList;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -16,53 +19,63 @@ public class Data {
 	private String name;
 	private List<FieldData> fieldData;
 	private int timestampIdx;
+	private int rowCount;
+	private RowBuffer rows;
+	private RowDecoder decoder;
+	private Map<String, Integer> fieldIndices;
+	private SoftReference<Column>[] columnCache;
 	private Map<String, List<Object>> data;
 
+	private RowLoader rowLoader;
+	private Data parent;
+	private int rowOffset;
+	private TimestampIndex timestampIndex;
+
+	interface RowLoader {
+		RowBuffer load() throws IOException;
+	}
+
 	public Data(MessageAddLogged messageAddLoggedObj) {
+		this(messageAddLoggedObj, messageAddLoggedObj.getRowBuffer().getRowCount(), null);
+		this.rows = messageAddLoggedObj.getRowBuffer();
+	}
+
+	// The rows are only loaded through rowLoader when a column is first decoded
+	Data(MessageAddLogged messageAddLoggedObj, int rowCount, RowLoader rowLoader) {
 		this.multiId = messageAddLoggedObj.getMultiId();
 		this.msgId = messageAddLoggedObj.getMsgId();
 		this.name = messageAddLoggedObj.getMessageName();
 		this.fieldData = messageAddLoggedObj.getFieldData();
 		this.timestampIdx = messageAddLoggedObj.getTimestampIdx();
-		this.data = new HashMap<>();
 
-		List<List<String>> dtypeList = messageAddLoggedObj.getDtype();
-		List<Byte> tempbuffer = messageAddLoggedObj.getBuffer();
+		this.decoder = messageAddLoggedObj.getRowDecoder();
+		this.rowCount = rowCount;
+		this.rowLoader = rowLoader;
 
-		byte[] buffer = new byte[tempbuffer.size()];
-		for (int i = 0; i < tempbuffer.size(); i++) {
-			buffer[i] = tempbuffer.get(i);
+		this.fieldIndices = new HashMap<>();
+		for (int i = 0; i < this.fieldData.size(); i++) {
+			this.fieldIndices.put(this.fieldData.get(i).getFieldName(), i);
 		}
+		this.columnCache = newColumnCache(this.fieldData.size());
+	}
 
-		int arraySize = 0;
-		for (FieldData fd : this.fieldData) {
-			arraySize += (int) ULogUtils.UNPACK_TYPES.get(fd.getTypeStr())[1];
-		}
-		arraySize = buffer.length / arraySize;
-		int index = 0;
-		for (int j = 0; j < arraySize; j++) {
-			for (int i = 0; i < this.fieldData.size(); i++) {
-				String dtypeKey = dtypeList.get(i).get(1);
-				if (ULogUtils.UNPACK_TYPES.containsKey(dtypeKey)) {
-					Object[] unpackDetails = ULogUtils.UNPACK_TYPES.get(dtypeKey);
-					int typeSize = (int) unpackDetails[1];
-
-					byte[] value = Arrays.copyOfRange(buffer, index, index + typeSize);
-					Object val = readBuffer(value, dtypeKey);
-					index += typeSize;
-
-					if (!this.data.containsKey(this.fieldData.get(i).getFieldName())) {
-						List<Object> intList = new ArrayList<>();
-						intList.add(val);
-						this.data.put(this.fieldData.get(i).getFieldName(), intList);
-					} else {
-						List<Object> entry = this.data.get(this.fieldData.get(i).getFieldName());
-						entry.add(val);
-					}
-				}
-			}
-		}
+	// Slice over rows [from, to) of parent, sharing its columns
+	private Data(Data parent, int from, int to) {
+		this.multiId = parent.multiId;
+		this.msgId = parent.msgId;
+		this.name = parent.name;
+		this.fieldData = parent.fieldData;
+		this.timestampIdx = parent.timestampIdx;
+		this.decoder = parent.decoder;
+		this.fieldIndices = parent.fieldIndices;
+		this.parent = parent;
+		this.rowOffset = from;
+		this.rowCount = to - from;
+	}
 
+	@SuppressWarnings("unchecked")
+	private static SoftReference<Column>[] newColumnCache(int size) {
+		return (SoftReference<Column>[]) new SoftReference<?>[size];
 	}
 
 	public byte getMultiId() {
@@ -85,45 +98,261 @@ public class Data {
 		return this.fieldData;
 	}
 
+	public int getRowCount() {
+		return this.rowCount;
+	}
+
+	// Raw rows of a topic that is not a slice, loaded from the log on first use
+	synchronized RowBuffer getRows() {
+		if (this.parent != null) {
+			throw new UnsupportedOperationException("Slices of " + this.name + " do not have their own rows");
+		}
+		if (this.rows == null) {
+			try {
+				this.rows = this.rowLoader.load();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return this.rows;
+	}
+
+	public List<Column> getColumns() {
+		List<Column> columns = new ArrayList<>(this.fieldData.size());
+		for (int i = 0; i < this.fieldData.size(); i++) {
+			columns.add(getColumn(i));
+		}
+		return columns;
+	}
+
+	public Column getColumn(String fieldName) {
+		Integer fieldIndex = this.fieldIndices.get(fieldName);
+		return fieldIndex != null ? getColumn(fieldIndex) : null;
+	}
+
+	// Columns are decoded from the raw rows on first access and cached through soft references, so the
+	// garbage collector can drop them again under memory pressure.
+	public synchronized Column getColumn(int fieldIndex) {
+		if (this.parent != null) {
+			return this.parent.getColumn(fieldIndex).slice(this.rowOffset, this.rowOffset + this.rowCount);
+		}
+		SoftReference<Column> cached = this.columnCache[fieldIndex];
+		Column column = cached != null ? cached.get() : null;
+		if (column == null) {
+			column = Column.create(this.fieldData.get(fieldIndex), this.rowCount);
+			RowBuffer rows = getRows();
+			int row = 0;
+			for (int c = 0; c < rows.getChunkCount(); c++) {
+				ByteBuffer chunk = rows.getChunk(c);
+				int chunkRows = chunk.limit() / this.decoder.getRowSize();
+				this.decoder.decodeField(chunk, 0, chunkRows, fieldIndex, column, row);
+				row += chunkRows;
+			}
+			this.columnCache[fieldIndex] = new SoftReference<>(column);
+		}
+		return column;
+	}
+
+	// Takes over the rows appended to the row buffer since it was created or last updated (see
+	// ULogReader.refresh). Decoded columns are grown and only the new rows are decoded into them. Columns and
+	// slices handed out before keep their old size.
+	synchronized int updateRowCount() {
+		if (this.rows == null || this.rows.getRowCount() == this.rowCount) {
+			return 0;
+		}
+		int from = this.rowCount;
+		int to = this.rows.getRowCount();
+		this.rowCount = to;
+		for (int i = 0; i < this.columnCache.length; i++) {
+			Column column = this.columnCache[i] != null ? this.columnCache[i].get() : null;
+			if (column == null) {
+				continue;
+			}
+			column = column.grow(to);
+			int row = 0;
+			for (int c = 0; c < this.rows.getChunkCount() && row < to; c++) {
+				ByteBuffer chunk = this.rows.getChunk(c);
+				int chunkRows = chunk.limit() / this.decoder.getRowSize();
+				int first = Math.max(row, from);
+				if (first < row + chunkRows) {
+					this.decoder.decodeField(chunk, (first - row) * this.decoder.getRowSize(), row + chunkRows - first,
+							i, column, first);
+				}
+				row += chunkRows;
+			}
+			this.columnCache[i] = new SoftReference<>(column);
+		}
+		this.timestampIndex = null;
+		return to - from;
+	}
+
+	Column[] createColumns() {
+		return this.decoder.createColumns(this.rowCount);
+	}
+
+	// Splits decoding all columns into tasks over whole chunks of at least taskRows rows each, so large topics
+	// are spread over several tasks. The tasks write disjoint row ranges of the given columns.
+	List<Runnable> createDecodeTasks(Column[] columns, int taskRows) {
+		RowBuffer rows = getRows();
+		List<Runnable> tasks = new ArrayList<>();
+		int firstChunk = 0;
+		int firstRow = 0;
+		int rowEnd = 0;
+		for (int c = 0; c < rows.getChunkCount(); c++) {
+			rowEnd += rows.getChunk(c).limit() / this.decoder.getRowSize();
+			if (rowEnd - firstRow >= taskRows || c == rows.getChunkCount() - 1) {
+				final int fromChunk = firstChunk;
+				final int toChunk = c + 1;
+				final int fromRow = firstRow;
+				tasks.add(() -> {
+					int row = fromRow;
+					for (int i = fromChunk; i < toChunk; i++) {
+						ByteBuffer chunk = rows.getChunk(i);
+						int chunkRows = chunk.limit() / this.decoder.getRowSize();
+						this.decoder.decode(chunk, 0, chunkRows, columns, row);
+						row += chunkRows;
+					}
+				});
+				firstChunk = c + 1;
+				firstRow = rowEnd;
+			}
+		}
+		return tasks;
+	}
+
+	synchronized void setColumns(Column[] columns) {
+		for (int i = 0; i < columns.length; i++) {
+			this.columnCache[i] = new SoftReference<>(columns[i]);
+		}
+	}
+
+	public synchronized boolean isDecoded(String fieldName) {
+		if (this.parent != null) {
+			return this.parent.isDecoded(fieldName);
+		}
+		Integer fieldIndex = this.fieldIndices.get(fieldName);
+		return fieldIndex != null && this.columnCache[fieldIndex] != null
+				&& this.columnCache[fieldIndex].get() != null;
+	}
+
+	// Drops the decoded columns, which are decoded again when next accessed. Slices share the columns of the
+	// Data they were taken from and do not release them, since other holders of that Data may still use them.
+	public synchronized void releaseColumns() {
+		if (this.parent != null) {
+			return;
+		}
+		Arrays.fill(this.columnCache, null);
+		this.timestampIndex = null;
+	}
+
+	public synchronized TimestampIndex getTimestampIndex() {
+		if (this.parent != null) {
+			return this.parent.getTimestampIndex();
+		}
+		if (this.timestampIndex == null) {
+			LongColumn timestamps = getLongColumn("timestamp");
+			if (timestamps == null) {
+				throw new IllegalStateException(this.name + " has no timestamp field");
+			}
+			this.timestampIndex = new TimestampIndex(timestamps);
+		}
+		return this.timestampIndex;
+	}
+
+	// First row with a timestamp >= timestamp, or the row count when there is none
+	public int indexOf(long timestamp) {
+		return clampRow(getTimestampIndex().lowerBound(timestamp));
+	}
+
+	// View of the rows with timestamps in [t0, t1] over the same columns, without copying
+	public Data slice(long t0, long t1) {
+		TimestampIndex index = getTimestampIndex();
+		int from = clampRow(index.lowerBound(t0));
+		int to = Math.max(from, clampRow(index.upperBound(t1)));
+		Data root = this.parent != null ? this.parent : this;
+		return new Data(root, this.rowOffset + from, this.rowOffset + to);
+	}
+
+	private int clampRow(int rootRow) {
+		return Math.min(Math.max(rootRow - this.rowOffset, 0), this.rowCount);
+	}
+
+	public ByteColumn getByteColumn(String fieldName) {
+		return getColumn(fieldName, ByteColumn.class);
+	}
+
+	public ShortColumn getShortColumn(String fieldName) {
+		return getColumn(fieldName, ShortColumn.class);
+	}
+
+	public IntColumn getIntColumn(String fieldName) {
+		return getColumn(fieldName, IntColumn.class);
+	}
+
+	public LongColumn getLongColumn(String fieldName) {
+		return getColumn(fieldName, LongColumn.class);
+	}
+
+	public FloatColumn getFloatColumn(String fieldName) {
+		return getColumn(fieldName, FloatColumn.class);
+	}
+
+	public DoubleColumn getDoubleColumn(String fieldName) {
+		return getColumn(fieldName, DoubleColumn.class);
+	}
+
+	public BooleanColumn getBooleanColumn(String fieldName) {
+		return getColumn(fieldName, BooleanColumn.class);
+	}
+
+	private <T extends Column> T getColumn(String fieldName, Class<T> columnType) {
+		Column column = getColumn(fieldName);
+		if (column == null) {
+			return null;
+		}
+		if (!columnType.isInstance(column)) {
+			throw new IllegalArgumentException(
+					"Field " + fieldName + " of type " + column.getTypeStr() + " is not a " + columnType.getSimpleName());
+		}
+		return columnType.cast(column);
+	}
+
+	// Boxed view over the columns. A column is decoded when its list is first read and values are only
+	// boxed when accessed. Each list holds on to its column from then on, so it stays decoded as long as the view
+	// is in use.
 	public Map<String, List<Object>> getData() {
+		if (this.data == null) {
+			Map<String, List<Object>> view = new HashMap<>();
+			for (int i = 0; i < this.fieldData.size(); i++) {
+				view.put(this.fieldData.get(i).getFieldName(), new ColumnView(i));
+			}
+			this.data = view;
+		}
 		return this.data;
 	}
 
-	private Object readBuffer(byte[] buffer, String dtype) {
-		Object[] typeInfo = ULogUtils.UNPACK_TYPES.get(dtype);
-		if (typeInfo == null) {
-			throw new IllegalArgumentException("Unsupported data type: " + dtype);
-		}
-		char typeChar = (char) typeInfo[0];
-		ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
-		byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
-		switch (typeChar) {
-		case 'b':
-			return byteBuffer.get(); // int8
-		case 'B':
-			return Byte.toUnsignedInt(byteBuffer.get()); // uint8
-		case 'h':
-			return byteBuffer.getShort(); // int16
-		case 'H':
-			return Short.toUnsignedInt(byteBuffer.getShort()); // uint16
-		case 'i':
-			return byteBuffer.getInt(); // int32
-		case 'I':
-			return Integer.toUnsignedLong(byteBuffer.getInt()); // uint32
-		case 'q':
-			return byteBuffer.getLong(); // int64
-		case 'Q':
-			return byteBuffer.getLong();
-		case 'f':
-			return byteBuffer.getFloat(); // float
-		case 'd':
-			return byteBuffer.getDouble(); // double
-		case '?':
-			return byteBuffer.get() != 0; // boolean
-		case 'c':
-			return (char) byteBuffer.get(); // char
-		default:
-			throw new IllegalArgumentException("Unknown type character: " + typeChar);
+	// List of one field in getData(). The column is only looked up again when the Data grew since (see refresh).
+	private final class ColumnView extends AbstractList<Object> {
+		private final int fieldIndex;
+		private volatile List<Object> values;
+
+		ColumnView(int fieldIndex) {
+			this.fieldIndex = fieldIndex;
+		}
+
+		@Override
+		public Object get(int index) {
+			List<Object> values = this.values;
+			if (values == null || index >= values.size()) {
+				values = getColumn(this.fieldIndex).asList();
+				this.values = values;
+			}
+			return values.get(index);
+		}
+
+		@Override
+		public int size() {
+			return Data.this.rowCount;
 		}
 	}
 
@@ -154,12 +383,12 @@ public class Data {
 			return false;
 		}
 
-		if (!this.data.keySet().equals(other.data.keySet())) {
+		if (!this.getData().keySet().equals(other.getData().keySet())) {
 			return false;
 		}
-		for (String key : this.data.keySet()) {
-			List<Object> thisValues = this.data.get(key);
-			List<Object> otherValues = other.data.get(key);
+		for (String key : this.getData().keySet()) {
+			List<Object> thisValues = this.getData().get(key);
+			List<Object> otherValues = other.getData().get(key);
 
 			if (!thisValues.equals(otherValues)) {
 				return false;
@@ -170,6 +399,7 @@ public class Data {
 	}
 
 	public List<Map.Entry<Long, Object>> listValueChanges(String fieldName) {
+		Map<String, List<Object>> data = getData();
 		if (!data.containsKey("timestamp") || !data.containsKey(fieldName)) {
 			throw new IllegalArgumentException("Required fields are missing.");
 		}
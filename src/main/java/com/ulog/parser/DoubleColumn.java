@@ -0,0 +1,60 @@
+package com.ulog.parser;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class DoubleColumn extends Column {
+
+	final double[] values;
+
+	public DoubleColumn(FieldData field, int size) {
+		super(field, size);
+		this.values = new double[size];
+	}
+
+	private DoubleColumn(FieldData field, double[] values, int offset, int size) {
+		super(field, offset, size);
+		this.values = values;
+	}
+
+	@Override
+	public double getDouble(int index) {
+		return this.values[this.offset + index];
+	}
+
+	// Backing array, shared with slices; the values of this column start at getOffset()
+	public double[] getValues() {
+		return this.values;
+	}
+
+	@Override
+	public DoubleColumn slice(int from, int to) {
+		checkSlice(from, to);
+		return new DoubleColumn(this.field, this.values, this.offset + from, to - from);
+	}
+
+	@Override
+	DoubleColumn grow(int size) {
+		double[] values = this.values;
+		if (this.offset + size > values.length) {
+			values = Arrays.copyOf(values, Math.max(this.offset + size, values.length + (values.length >> 1)));
+		}
+		return new DoubleColumn(this.field, values, this.offset, size);
+	}
+
+	@Override
+	void putValues(ByteBuffer target, int from, int to) {
+		target.asDoubleBuffer().put(this.values, this.offset + from, to - from);
+		target.position(target.position() + (to - from) * 8);
+	}
+
+	@Override
+	public Object get(int index) {
+		return this.values[this.offset + index];
+	}
+
+	@Override
+	public void appendTo(StringBuilder target, int index) {
+		target.append(this.values[this.offset + index]);
+	}
+}
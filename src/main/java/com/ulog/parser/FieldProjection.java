@@ -0,0 +1,85 @@
+package com.ulog.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Field selection for one topic. Patterns are flattened field names in which an index may be written as a
+// range ("gyro_rad[0..2]") or a wildcard ("q[*]"), e.g. "timestamp", "accelerometer_m_s2[*]" or
+// "esc[0..3].esc_rpm".
+public class FieldProjection {
+
+	private static final Pattern INDEX = Pattern.compile("\\[(\\*|\\d+\\.\\.\\d+)\\]");
+
+	private final List<String> fieldPatterns;
+	private final List<Pattern> patterns = new ArrayList<>();
+	private final List<int[][]> ranges = new ArrayList<>();
+
+	public FieldProjection(List<String> fieldPatterns) {
+		this.fieldPatterns = fieldPatterns;
+		for (String fieldPattern : fieldPatterns) {
+			StringBuilder regex = new StringBuilder();
+			List<int[]> patternRanges = new ArrayList<>();
+			Matcher matcher = INDEX.matcher(fieldPattern);
+			int last = 0;
+			while (matcher.find()) {
+				regex.append(Pattern.quote(fieldPattern.substring(last, matcher.start())));
+				regex.append("\\[(\\d+)\\]");
+				if (matcher.group(1).equals("*")) {
+					patternRanges.add(new int[] { 0, Integer.MAX_VALUE });
+				} else {
+					String[] bounds = matcher.group(1).split("\\.\\.");
+					patternRanges.add(new int[] { Integer.parseInt(bounds[0]), Integer.parseInt(bounds[1]) });
+				}
+				last = matcher.end();
+			}
+			regex.append(Pattern.quote(fieldPattern.substring(last)));
+			this.patterns.add(Pattern.compile(regex.toString()));
+			this.ranges.add(patternRanges.toArray(new int[0][]));
+		}
+	}
+
+	public boolean matches(String fieldName) {
+		for (int p = 0; p < this.patterns.size(); p++) {
+			if (matches(p, fieldName)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public int getPatternCount() {
+		return this.patterns.size();
+	}
+
+	// Patterns that select none of the given fields, e.g. misspelled field names
+	public List<String> getUnmatchedPatterns(List<FieldData> fields) {
+		List<String> unmatched = new ArrayList<>();
+		for (int p = 0; p < this.patterns.size(); p++) {
+			boolean found = false;
+			for (int i = 0; i < fields.size() && !found; i++) {
+				found = matches(p, fields.get(i).getFieldName());
+			}
+			if (!found) {
+				unmatched.add(this.fieldPatterns.get(p));
+			}
+		}
+		return unmatched;
+	}
+
+	private boolean matches(int p, String fieldName) {
+		Matcher matcher = this.patterns.get(p).matcher(fieldName);
+		if (!matcher.matches()) {
+			return false;
+		}
+		int[][] patternRanges = this.ranges.get(p);
+		for (int g = 0; g < patternRanges.length; g++) {
+			long index = Long.parseLong(matcher.group(g + 1));
+			if (index < patternRanges[g][0] || index > patternRanges[g][1]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
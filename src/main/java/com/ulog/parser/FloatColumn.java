@@ -0,0 +1,64 @@
+package com.ulog.parser;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class FloatColumn extends Column {
+
+	final float[] values;
+
+	public FloatColumn(FieldData field, int size) {
+		super(field, size);
+		this.values = new float[size];
+	}
+
+	private FloatColumn(FieldData field, float[] values, int offset, int size) {
+		super(field, offset, size);
+		this.values = values;
+	}
+
+	public float getFloat(int index) {
+		return this.values[this.offset + index];
+	}
+
+	// Backing array, shared with slices; the values of this column start at getOffset()
+	public float[] getValues() {
+		return this.values;
+	}
+
+	@Override
+	public FloatColumn slice(int from, int to) {
+		checkSlice(from, to);
+		return new FloatColumn(this.field, this.values, this.offset + from, to - from);
+	}
+
+	@Override
+	FloatColumn grow(int size) {
+		float[] values = this.values;
+		if (this.offset + size > values.length) {
+			values = Arrays.copyOf(values, Math.max(this.offset + size, values.length + (values.length >> 1)));
+		}
+		return new FloatColumn(this.field, values, this.offset, size);
+	}
+
+	@Override
+	void putValues(ByteBuffer target, int from, int to) {
+		target.asFloatBuffer().put(this.values, this.offset + from, to - from);
+		target.position(target.position() + (to - from) * 4);
+	}
+
+	@Override
+	public Object get(int index) {
+		return this.values[this.offset + index];
+	}
+
+	@Override
+	public void appendTo(StringBuilder target, int index) {
+		target.append(this.values[this.offset + index]);
+	}
+
+	@Override
+	public double getDouble(int index) {
+		return this.values[this.offset + index];
+	}
+}
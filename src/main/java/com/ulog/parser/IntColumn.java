@@ -0,0 +1,78 @@
+package com.ulog.parser;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class IntColumn extends Column {
+
+	final int[] values;
+
+	public IntColumn(FieldData field, int size) {
+		super(field, size);
+		this.values = new int[size];
+	}
+
+	private IntColumn(FieldData field, int[] values, int offset, int size) {
+		super(field, offset, size);
+		this.values = values;
+	}
+
+	public int getInt(int index) {
+		return this.values[this.offset + index];
+	}
+
+	public long getLong(int index) {
+		if (this.typeChar == 'I') {
+			return Integer.toUnsignedLong(this.values[this.offset + index]);
+		}
+		return this.values[this.offset + index];
+	}
+
+	// Backing array, shared with slices; the values of this column start at getOffset()
+	public int[] getValues() {
+		return this.values;
+	}
+
+	@Override
+	public IntColumn slice(int from, int to) {
+		checkSlice(from, to);
+		return new IntColumn(this.field, this.values, this.offset + from, to - from);
+	}
+
+	@Override
+	IntColumn grow(int size) {
+		int[] values = this.values;
+		if (this.offset + size > values.length) {
+			values = Arrays.copyOf(values, Math.max(this.offset + size, values.length + (values.length >> 1)));
+		}
+		return new IntColumn(this.field, values, this.offset, size);
+	}
+
+	@Override
+	void putValues(ByteBuffer target, int from, int to) {
+		target.asIntBuffer().put(this.values, this.offset + from, to - from);
+		target.position(target.position() + (to - from) * 4);
+	}
+
+	@Override
+	public Object get(int index) {
+		if (this.typeChar == 'I') {
+			return Integer.toUnsignedLong(this.values[this.offset + index]);
+		}
+		return this.values[this.offset + index];
+	}
+
+	@Override
+	public void appendTo(StringBuilder target, int index) {
+		if (this.typeChar == 'I') {
+			target.append(Integer.toUnsignedLong(this.values[this.offset + index]));
+		} else {
+			target.append(this.values[this.offset + index]);
+		}
+	}
+
+	@Override
+	public double getDouble(int index) {
+		return getLong(index);
+	}
+}
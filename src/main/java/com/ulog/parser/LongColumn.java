@@ -0,0 +1,64 @@
+package com.ulog.parser;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class LongColumn extends Column {
+
+	final long[] values;
+
+	public LongColumn(FieldData field, int size) {
+		super(field, size);
+		this.values = new long[size];
+	}
+
+	private LongColumn(FieldData field, long[] values, int offset, int size) {
+		super(field, offset, size);
+		this.values = values;
+	}
+
+	public long getLong(int index) {
+		return this.values[this.offset + index];
+	}
+
+	// Backing array, shared with slices; the values of this column start at getOffset()
+	public long[] getValues() {
+		return this.values;
+	}
+
+	@Override
+	public LongColumn slice(int from, int to) {
+		checkSlice(from, to);
+		return new LongColumn(this.field, this.values, this.offset + from, to - from);
+	}
+
+	@Override
+	LongColumn grow(int size) {
+		long[] values = this.values;
+		if (this.offset + size > values.length) {
+			values = Arrays.copyOf(values, Math.max(this.offset + size, values.length + (values.length >> 1)));
+		}
+		return new LongColumn(this.field, values, this.offset, size);
+	}
+
+	@Override
+	void putValues(ByteBuffer target, int from, int to) {
+		target.asLongBuffer().put(this.values, this.offset + from, to - from);
+		target.position(target.position() + (to - from) * 8);
+	}
+
+	@Override
+	public Object get(int index) {
+		return this.values[this.offset + index];
+	}
+
+	@Override
+	public void appendTo(StringBuilder target, int index) {
+		target.append(this.values[this.offset + index]);
+	}
+
+	@Override
+	public double getDouble(int index) {
+		return this.values[this.offset + index];
+	}
+}
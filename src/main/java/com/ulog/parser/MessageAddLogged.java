@@ -15,8 +15,14 @@ public class MessageAddLogged {
 	private List<FieldData> fieldData;
 	private int timestampIdx = -1;
 	private int maxDataSize = 0;
+	private int itemSize = 0;
+	private int rowSize = 0;
+	private int[] projectedStarts;
+	private int[] projectedLengths;
+	private int[] fieldOffsets;
 	private int timestampOffset = 0;
-	private List<Byte> buffer = new ArrayList<Byte>();
+	private RowBuffer buffer;
+	private RowDecoder rowDecoder;
 	private List<List<String>> dtype;
 
 	public MessageAddLogged(byte[] data, Map<String, MessageFormat> messageFormats) {
@@ -34,10 +40,13 @@ public class MessageAddLogged {
 		}
 
 		List<List<String>> dtypeList = new ArrayList<>();
-		for (FieldData field : this.fieldData) {
+		this.fieldOffsets = new int[this.fieldData.size()];
+		for (int i = 0; i < this.fieldData.size(); i++) {
+			FieldData field = this.fieldData.get(i);
 			Object numpyType = field.getTypeStr();
 			Object typeSize = ULogUtils.UNPACK_TYPES.get(numpyType)[1];
 			int typeSize_int = (Integer) typeSize;
+			this.fieldOffsets[i] = this.maxDataSize;
 			this.maxDataSize += typeSize_int;
 			List<String> temp = new ArrayList<String>();
 			temp.add(field.getFieldName());
@@ -45,6 +54,67 @@ public class MessageAddLogged {
 			dtypeList.add(temp);
 		}
 		this.dtype = (List<List<String>>) dtypeList;
+		this.itemSize = getItemSize(this.dtype);
+		this.rowSize = this.itemSize;
+		this.buffer = new RowBuffer(this.rowSize);
+		this.rowDecoder = new RowDecoder(this);
+	}
+
+	// Keeps only the fields selected by projection. Rows are still checked against the full item size, but only
+	// the byte ranges of the selected fields are stored and decoded. Returns false, leaving the subscription
+	// unchanged, when no field is selected.
+	public boolean project(FieldProjection projection) {
+		List<FieldData> selectedFields = new ArrayList<>();
+		List<List<String>> selectedDtype = new ArrayList<>();
+		List<Integer> selectedOffsets = new ArrayList<>();
+		List<int[]> ranges = new ArrayList<>();
+		int selectedSize = 0;
+		for (int i = 0; i < this.fieldData.size(); i++) {
+			if (!projection.matches(this.fieldData.get(i).getFieldName())) {
+				continue;
+			}
+			int size = (int) ULogUtils.UNPACK_TYPES.get(this.fieldData.get(i).getTypeStr())[1];
+			int[] lastRange = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+			if (lastRange != null && lastRange[0] + lastRange[1] == this.fieldOffsets[i]) {
+				lastRange[1] += size;
+			} else {
+				ranges.add(new int[] { this.fieldOffsets[i], size });
+			}
+			selectedFields.add(this.fieldData.get(i));
+			selectedDtype.add(this.dtype.get(i));
+			selectedOffsets.add(this.fieldOffsets[i]);
+			selectedSize += size;
+		}
+		if (selectedFields.isEmpty()) {
+			return false;
+		}
+
+		this.timestampIdx = -1;
+		for (int i = 0; i < selectedFields.size(); i++) {
+			if (selectedFields.get(i).getFieldName().equals("timestamp")) {
+				this.timestampIdx = i;
+			}
+		}
+		this.fieldData = selectedFields;
+		this.dtype = selectedDtype;
+		this.fieldOffsets = new int[selectedOffsets.size()];
+		for (int i = 0; i < this.fieldOffsets.length; i++) {
+			this.fieldOffsets[i] = selectedOffsets.get(i);
+		}
+		this.projectedStarts = new int[ranges.size()];
+		this.projectedLengths = new int[ranges.size()];
+		for (int i = 0; i < ranges.size(); i++) {
+			this.projectedStarts[i] = ranges.get(i)[0];
+			this.projectedLengths[i] = ranges.get(i)[1];
+		}
+		this.rowSize = selectedSize;
+		this.buffer = new RowBuffer(this.rowSize);
+		this.rowDecoder = new RowDecoder(this);
+		return true;
+	}
+
+	public boolean isProjected() {
+		return this.projectedStarts != null;
 	}
 
 	private void parseFormat(Map<String, MessageFormat> messageFormats) {
@@ -125,6 +195,24 @@ public class MessageAddLogged {
 		return this.timestampIdx;
 	}
 
+	public int getFieldOffset(String fieldName) {
+		for (int i = 0; i < this.fieldData.size(); i++) {
+			if (this.fieldData.get(i).getFieldName().equals(fieldName)) {
+				return this.fieldOffsets[i];
+			}
+		}
+		return -1;
+	}
+
+	public int getItemSize() {
+		return this.itemSize;
+	}
+
+	// Size of a stored row, smaller than the item size when the subscription is projected
+	public int getRowSize() {
+		return this.rowSize;
+	}
+
 	public int getItemSize(List<List<String>> dtype) {
 		int s = 0;
 
@@ -137,6 +225,14 @@ public class MessageAddLogged {
 	}
 
 	public List<Byte> getBuffer() {
+		return this.buffer.asList();
+	}
+
+	public RowDecoder getRowDecoder() {
+		return this.rowDecoder;
+	}
+
+	public RowBuffer getRowBuffer() {
 		return this.buffer;
 	}
 
@@ -146,10 +242,19 @@ public class MessageAddLogged {
 			return; 
 		}
 		
-		for (int i = 2; i < data.length; i++) {
-			this.buffer.add(data[i]);
-		}
+		appendRow(ByteBuffer.wrap(data, 2, data.length - 2));
+	}
 
+	public void appendRow(ByteBuffer row) {
+		appendRow(this.buffer, row);
+	}
+
+	public void appendRow(RowBuffer target, ByteBuffer row) {
+		if (this.projectedStarts != null) {
+			target.append(row, this.projectedStarts, this.projectedLengths);
+		} else {
+			target.append(row);
+		}
 	}
 
 }
\ No newline at end of file
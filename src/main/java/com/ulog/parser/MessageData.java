@@ -3,12 +3,13 @@ package com.ulog.parser;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.Arrays;
 import java.util.Map;
 
 public class MessageData {
 
 	private long timestamp;
+	private int msgId;
+	private MessageAddLogged subscription;
 
 	public MessageData() {
 		this.timestamp = 0;
@@ -18,47 +19,66 @@ public class MessageData {
 		return this.timestamp;
 	}
 
+	public int getMsgId() {
+		return this.msgId;
+	}
+
+	public MessageAddLogged getSubscription() {
+		return this.subscription;
+	}
+
 	public boolean initialize(byte[] data, MessageHeader header, Map<Integer, MessageAddLogged> subscriptions,
 			ULogReader ulogObject) throws IOException {
+		boolean hasCorruption = initialize(ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN), header,
+				subscriptions, ulogObject.getParser());
+		if (this.subscription != null) {
+			this.subscription.appendRow(ByteBuffer.wrap(data, 2, this.subscription.getItemSize()));
+		}
+		return hasCorruption;
+	}
+
+	public boolean initialize(ByteBuffer data, MessageHeader header, Map<Integer, MessageAddLogged> subscriptions,
+			ULogParser parser) throws IOException {
 
 		boolean hasCorruption = false;
 
-		int msgId = ULogUtils.unpackUShort(Arrays.copyOfRange(data, 0, 2));
+		int offset = data.position();
+		this.msgId = Short.toUnsignedInt(data.getShort(offset));
+		this.subscription = null;
 
-		if (subscriptions.containsKey(msgId)) {
+		if (subscriptions.containsKey(this.msgId)) {
 
-			MessageAddLogged subscription = subscriptions.get(msgId);
+			MessageAddLogged subscription = subscriptions.get(this.msgId);
 
-			int minDataSize = subscription.getItemSize(subscription.getDtype());
+			int minDataSize = subscription.getItemSize();
 
-			int dataSize = data.length - 2;
+			int dataSize = header.getMsgSize() - 2;
 
 			if (dataSize < minDataSize || dataSize > subscription.getMaxDataSize()) {
 				this.timestamp = 0;
 				hasCorruption = true;
 
 			} else {
-				if (dataSize > minDataSize) {
-					data = Arrays.copyOfRange(data, 0, 2 + minDataSize);
-				}
-
-				subscription.appendToBuffer(Arrays.copyOfRange(data, 0, data.length));
+				this.subscription = subscription;
 
 				int timestampOffset = subscription.getTimestampOffset();
-				this.timestamp = ByteBuffer.wrap(Arrays.copyOfRange(data, timestampOffset + 2, timestampOffset + 10))
-						.order(ByteOrder.LITTLE_ENDIAN).getLong();
+				if (timestampOffset + 8 <= minDataSize) {
+					this.timestamp = data.getLong(offset + 2 + timestampOffset);
+				} else {
+					this.timestamp = 0;
+				}
 			}
 
 		} else {
-			if (!ulogObject.getFilteredMessageIds().contains(msgId)) {
-				if (!ulogObject.getMissingMessageIds().contains(Integer.toString(msgId))) {
-					ulogObject.getMissingMessageIds().add(String.valueOf(msgId));
-					if (ulogObject.isDebug()) {
-						System.out.println(ulogObject.getFileHandle().getFilePointer());
+			if (!parser.getFilteredMessageIds().contains(this.msgId)) {
+				if (!parser.getMissingMessageIds().contains(Integer.toString(this.msgId))) {
+					parser.getMissingMessageIds().add(String.valueOf(this.msgId));
+					if (parser.isDebug()) {
+						System.out.println(parser.getInput().position());
 					}
 					System.out.printf(
 							"Warning: no subscription found for message id %d. Continuing, but file is most likely corrupt%n",
-							msgId);
+							this.msgId);
 				}
 				hasCorruption = true;
 			}
@@ -1,4 +1,7 @@
 package com.ulog.parser;
+
+import java.nio.ByteBuffer;
+
 public class MessageHeader {
 	private int msgSize;
 	private short msgType;
@@ -13,6 +16,12 @@ public class MessageHeader {
 		this.msgType = ULogUtils.unpackUInt8(new byte[] { data[2] }); 
 	}
 
+	public void initialize(ByteBuffer data) {
+		int offset = data.position();
+		this.msgSize = Short.toUnsignedInt(data.getShort(offset));
+		this.msgType = (short) Byte.toUnsignedInt(data.get(offset + 2));
+	}
+
 	public int getMsgSize() {
 		return msgSize;
 	}
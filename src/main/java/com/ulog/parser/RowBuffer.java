@@ -0,0 +1,117 @@
+package com.ulog.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RowBuffer {
+
+	private static final int FIRST_CHUNK_BYTES = 1 << 12;
+	private static final int MAX_CHUNK_BYTES = 1 << 20;
+
+	private final int rowSize;
+	private final List<byte[]> chunks = new ArrayList<>();
+	private byte[] current;
+	private int currentUsed = 0;
+	private long size = 0;
+
+	public RowBuffer(int rowSize) {
+		this.rowSize = rowSize;
+	}
+
+	public int getRowSize() {
+		return this.rowSize;
+	}
+
+	public int getRowCount() {
+		return this.rowSize == 0 ? 0 : (int) (this.size / this.rowSize);
+	}
+
+	public long size() {
+		return this.size;
+	}
+
+	public void append(ByteBuffer data) {
+		copy(data, data.position(), data.remaining());
+	}
+
+	// Appends only the byte ranges [starts[i], starts[i] + lengths[i]) of data, relative to its position
+	public void append(ByteBuffer data, int[] starts, int[] lengths) {
+		int position = data.position();
+		for (int i = 0; i < starts.length; i++) {
+			copy(data, position + starts[i], lengths[i]);
+		}
+	}
+
+	private void copy(ByteBuffer data, int position, int length) {
+		while (length > 0) {
+			if (this.current == null || this.currentUsed == this.current.length) {
+				newChunk();
+			}
+			int count = Math.min(length, this.current.length - this.currentUsed);
+			if (data.hasArray()) {
+				System.arraycopy(data.array(), data.arrayOffset() + position, this.current, this.currentUsed, count);
+			} else {
+				ByteBuffer source = data.duplicate();
+				source.position(position);
+				source.get(this.current, this.currentUsed, count);
+			}
+			this.currentUsed += count;
+			this.size += count;
+			position += count;
+			length -= count;
+		}
+	}
+
+	// Chunk capacities are multiples of the row size, so a row never spans two chunks
+	private void newChunk() {
+		int rowBytes = Math.max(1, this.rowSize);
+		int chunkBytes = this.current == null ? FIRST_CHUNK_BYTES : Math.min(this.current.length * 2, MAX_CHUNK_BYTES);
+		this.current = new byte[Math.max(1, chunkBytes / rowBytes) * rowBytes];
+		this.currentUsed = 0;
+		this.chunks.add(this.current);
+	}
+
+	public int getChunkCount() {
+		return this.chunks.size();
+	}
+
+	// Little-endian view of the used part of a chunk
+	public ByteBuffer getChunk(int index) {
+		byte[] chunk = this.chunks.get(index);
+		int used = chunk == this.current ? this.currentUsed : chunk.length;
+		return ByteBuffer.wrap(chunk, 0, used).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	public void clear() {
+		this.chunks.clear();
+		this.current = null;
+		this.currentUsed = 0;
+		this.size = 0;
+	}
+
+	public List<Byte> asList() {
+		return new AbstractList<Byte>() {
+			@Override
+			public Byte get(int index) {
+				if (index < 0 || index >= size()) {
+					throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+				}
+				for (byte[] chunk : RowBuffer.this.chunks) {
+					if (index < chunk.length) {
+						return chunk[index];
+					}
+					index -= chunk.length;
+				}
+				throw new IndexOutOfBoundsException();
+			}
+
+			@Override
+			public int size() {
+				return (int) RowBuffer.this.size;
+			}
+		};
+	}
+}
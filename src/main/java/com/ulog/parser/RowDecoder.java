@@ -0,0 +1,159 @@
+package com.ulog.parser;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RowDecoder {
+
+	private final List<FieldData> fields;
+	private final int[] offsets;
+	private final char[] typeCodes;
+	private final int rowSize;
+
+	public RowDecoder(MessageAddLogged subscription) {
+		List<List<String>> dtype = subscription.getDtype();
+		this.fields = new ArrayList<>(subscription.getFieldData());
+		this.offsets = new int[dtype.size()];
+		this.typeCodes = new char[dtype.size()];
+
+		int offset = 0;
+		for (int i = 0; i < dtype.size(); i++) {
+			Object[] typeInfo = ULogUtils.UNPACK_TYPES.get(dtype.get(i).get(1).trim());
+			if (typeInfo == null) {
+				throw new IllegalArgumentException("Unsupported data type: " + dtype.get(i).get(1));
+			}
+			this.offsets[i] = offset;
+			this.typeCodes[i] = (char) typeInfo[0];
+			offset += (int) typeInfo[1];
+		}
+		this.rowSize = offset;
+	}
+
+	public int getRowSize() {
+		return this.rowSize;
+	}
+
+	public int getFieldCount() {
+		return this.offsets.length;
+	}
+
+	public int getOffset(int fieldIndex) {
+		return this.offsets[fieldIndex];
+	}
+
+	public char getTypeCode(int fieldIndex) {
+		return this.typeCodes[fieldIndex];
+	}
+
+	public Column[] createColumns(int rowCount) {
+		Column[] columns = new Column[this.fields.size()];
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = Column.create(this.fields.get(i), rowCount);
+		}
+		return columns;
+	}
+
+	// Decodes a single field of rowCount consecutive rows starting at the absolute offset start into the
+	// column, beginning at column index firstRow.
+	public void decodeField(ByteBuffer buffer, int start, int rowCount, int fieldIndex, Column column,
+			int firstRow) {
+		int at = start + this.offsets[fieldIndex];
+		int end = firstRow + rowCount;
+		switch (this.typeCodes[fieldIndex]) {
+		case 'b':
+		case 'B':
+		case 'c':
+			byte[] bytes = ((ByteColumn) column).values;
+			for (int r = firstRow; r < end; r++, at += this.rowSize) {
+				bytes[r] = buffer.get(at);
+			}
+			break;
+		case 'h':
+		case 'H':
+			short[] shorts = ((ShortColumn) column).values;
+			for (int r = firstRow; r < end; r++, at += this.rowSize) {
+				shorts[r] = buffer.getShort(at);
+			}
+			break;
+		case 'i':
+		case 'I':
+			int[] ints = ((IntColumn) column).values;
+			for (int r = firstRow; r < end; r++, at += this.rowSize) {
+				ints[r] = buffer.getInt(at);
+			}
+			break;
+		case 'q':
+		case 'Q':
+			long[] longs = ((LongColumn) column).values;
+			for (int r = firstRow; r < end; r++, at += this.rowSize) {
+				longs[r] = buffer.getLong(at);
+			}
+			break;
+		case 'f':
+			float[] floats = ((FloatColumn) column).values;
+			for (int r = firstRow; r < end; r++, at += this.rowSize) {
+				floats[r] = buffer.getFloat(at);
+			}
+			break;
+		case 'd':
+			double[] doubles = ((DoubleColumn) column).values;
+			for (int r = firstRow; r < end; r++, at += this.rowSize) {
+				doubles[r] = buffer.getDouble(at);
+			}
+			break;
+		case '?':
+			boolean[] booleans = ((BooleanColumn) column).values;
+			for (int r = firstRow; r < end; r++, at += this.rowSize) {
+				booleans[r] = buffer.get(at) != 0;
+			}
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown type character: " + this.typeCodes[fieldIndex]);
+		}
+	}
+
+	// Decodes rowCount consecutive rows starting at the absolute offset start of a little-endian buffer into
+	// the columns, beginning at column index firstRow.
+	public void decode(ByteBuffer buffer, int start, int rowCount, Column[] columns, int firstRow) {
+		int[] offsets = this.offsets;
+		char[] typeCodes = this.typeCodes;
+		int base = start;
+		for (int r = firstRow; r < firstRow + rowCount; r++) {
+			for (int i = 0; i < offsets.length; i++) {
+				int at = base + offsets[i];
+				switch (typeCodes[i]) {
+				case 'b':
+				case 'B':
+				case 'c':
+					((ByteColumn) columns[i]).values[r] = buffer.get(at);
+					break;
+				case 'h':
+				case 'H':
+					((ShortColumn) columns[i]).values[r] = buffer.getShort(at);
+					break;
+				case 'i':
+				case 'I':
+					((IntColumn) columns[i]).values[r] = buffer.getInt(at);
+					break;
+				case 'q':
+				case 'Q':
+					((LongColumn) columns[i]).values[r] = buffer.getLong(at);
+					break;
+				case 'f':
+					((FloatColumn) columns[i]).values[r] = buffer.getFloat(at);
+					break;
+				case 'd':
+					((DoubleColumn) columns[i]).values[r] = buffer.getDouble(at);
+					break;
+				case '?':
+					((BooleanColumn) columns[i]).values[r] = buffer.get(at) != 0;
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown type character: " + typeCodes[i]);
+				}
+			}
+			base += this.rowSize;
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package com.ulog.parser;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class ShortColumn extends Column {
+
+	final short[] values;
+
+	public ShortColumn(FieldData field, int size) {
+		super(field, size);
+		this.values = new short[size];
+	}
+
+	private ShortColumn(FieldData field, short[] values, int offset, int size) {
+		super(field, offset, size);
+		this.values = values;
+	}
+
+	public short getShort(int index) {
+		return this.values[this.offset + index];
+	}
+
+	public int getInt(int index) {
+		if (this.typeChar == 'H') {
+			return Short.toUnsignedInt(this.values[this.offset + index]);
+		}
+		return this.values[this.offset + index];
+	}
+
+	// Backing array, shared with slices; the values of this column start at getOffset()
+	public short[] getValues() {
+		return this.values;
+	}
+
+	@Override
+	public ShortColumn slice(int from, int to) {
+		checkSlice(from, to);
+		return new ShortColumn(this.field, this.values, this.offset + from, to - from);
+	}
+
+	@Override
+	ShortColumn grow(int size) {
+		short[] values = this.values;
+		if (this.offset + size > values.length) {
+			values = Arrays.copyOf(values, Math.max(this.offset + size, values.length + (values.length >> 1)));
+		}
+		return new ShortColumn(this.field, values, this.offset, size);
+	}
+
+	@Override
+	void putValues(ByteBuffer target, int from, int to) {
+		target.asShortBuffer().put(this.values, this.offset + from, to - from);
+		target.position(target.position() + (to - from) * 2);
+	}
+
+	@Override
+	public Object get(int index) {
+		if (this.typeChar == 'H') {
+			return Short.toUnsignedInt(this.values[this.offset + index]);
+		}
+		return this.values[this.offset + index];
+	}
+
+	@Override
+	public void appendTo(StringBuilder target, int index) {
+		if (this.typeChar == 'H') {
+			target.append(Short.toUnsignedInt(this.values[this.offset + index]));
+		} else {
+			target.append(this.values[this.offset + index]);
+		}
+	}
+
+	@Override
+	public double getDouble(int index) {
+		return getInt(index);
+	}
+}
@@ -0,0 +1,89 @@
+package com.ulog.parser;
+
+// Sparse index over a timestamp column. Every STRIDE-th entry keeps the largest timestamp up to that row, which
+// is monotonic even when the log's timestamps are not, so a lookup is a binary search over the samples followed
+// by a search of at most STRIDE rows.
+public class TimestampIndex {
+
+	private static final int STRIDE = 64;
+
+	private final LongColumn timestamps;
+	private final long[] samples;
+	private final boolean monotonic;
+
+	public TimestampIndex(LongColumn timestamps) {
+		this.timestamps = timestamps;
+		int size = timestamps.size();
+		this.samples = new long[(size + STRIDE - 1) / STRIDE];
+		boolean monotonic = true;
+		long max = Long.MIN_VALUE;
+		for (int i = 0; i < size; i++) {
+			long timestamp = timestamps.getLong(i);
+			if (timestamp < max) {
+				monotonic = false;
+			} else {
+				max = timestamp;
+			}
+			if (i % STRIDE == 0) {
+				this.samples[i / STRIDE] = max;
+			}
+		}
+		this.monotonic = monotonic;
+	}
+
+	public boolean isMonotonic() {
+		return this.monotonic;
+	}
+
+	// First row with a timestamp >= timestamp, or the row count when there is none
+	public int lowerBound(long timestamp) {
+		int size = this.timestamps.size();
+		if (size == 0) {
+			return 0;
+		}
+
+		// last block whose sample is below timestamp; the match is in that block or starts the next one
+		int low = 0;
+		int high = this.samples.length - 1;
+		int block = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (this.samples[mid] < timestamp) {
+				block = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		if (block < 0) {
+			return 0;
+		}
+
+		int from = block * STRIDE;
+		int to = Math.min(from + STRIDE, size);
+		if (this.monotonic) {
+			low = from;
+			high = to;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (this.timestamps.getLong(mid) < timestamp) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+		for (int i = from; i < to; i++) {
+			if (this.timestamps.getLong(i) >= timestamp) {
+				return i;
+			}
+		}
+		return to;
+	}
+
+	// First row with a timestamp > timestamp, or the row count when there is none
+	public int upperBound(long timestamp) {
+		return timestamp == Long.MAX_VALUE ? this.timestamps.size() : lowerBound(timestamp + 1);
+	}
+}
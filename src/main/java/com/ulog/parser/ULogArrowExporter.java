@@ -0,0 +1,465 @@
+package com.ulog.parser;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Writes every topic as an Apache Arrow IPC file (or stream), without depending on the Arrow libraries. Each field
+// becomes a non-nullable column of the matching Arrow primitive type, and the decoded columns are copied in bulk
+// into record batches of up to batchRows rows. The metadata is FlatBuffers encoded by the small writer below.
+public class ULogArrowExporter {
+
+	private static final byte[] MAGIC = "ARROW1".getBytes(StandardCharsets.US_ASCII);
+	private static final int CONTINUATION = 0xFFFFFFFF;
+	private static final short METADATA_V5 = 4;
+	private static final byte HEADER_SCHEMA = 1;
+	private static final byte HEADER_RECORD_BATCH = 3;
+	private static final byte TYPE_INT = 2;
+	private static final byte TYPE_FLOATING_POINT = 3;
+	private static final byte TYPE_BOOL = 6;
+	private static final short PRECISION_SINGLE = 1;
+	private static final short PRECISION_DOUBLE = 2;
+
+	private int batchRows = 1 << 16;
+	private boolean streamFormat = false;
+
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.out.println("ULog to Arrow Converter");
+			System.out.println("Usage: java -cp ulog-reader.jar com.ulog.parser.ULogArrowExporter <input_file.ulg>"
+					+ " <output_path_prefix> [--stream]");
+			return;
+		}
+		boolean stream = args.length > 2 && args[2].equals("--stream");
+
+		System.out.println("Loading file: " + args[0]);
+		ULogReader reader = new ULogReader(args[0], null, true, false);
+		int failures = new ULogArrowExporter().setStreamFormat(stream).export(reader.getDataList(), args[1]);
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	public ULogArrowExporter setBatchRows(int batchRows) {
+		this.batchRows = batchRows;
+		return this;
+	}
+
+	// Writes the IPC stream format (.arrows) instead of the file format (.arrow)
+	public ULogArrowExporter setStreamFormat(boolean streamFormat) {
+		this.streamFormat = streamFormat;
+		return this;
+	}
+
+	// Writes <outputFilePrefix>_<topic>_<multi id>.arrow for every topic with rows. Returns the number of files
+	// that could not be written.
+	public int export(List<Data> dataList, String outputFilePrefix) {
+		int failures = 0;
+		for (Data d : dataList) {
+			String sanitizedFileName = d.getName().replace("/", "_");
+			String filePath = String.format("%s_%s_%d.%s", outputFilePrefix, sanitizedFileName, d.getMultiId(),
+					this.streamFormat ? "arrows" : "arrow");
+			if (d.getRowCount() == 0) {
+				System.err.println("Skipping " + filePath + " - No data found!");
+				continue;
+			}
+			try {
+				write(d, filePath);
+				System.out.println("Arrow file written successfully: " + filePath);
+			} catch (IOException | RuntimeException e) {
+				System.err.println("Error writing Arrow: " + e.getMessage());
+				failures++;
+			}
+		}
+		return failures;
+	}
+
+	public void write(Data d, String filePath) throws IOException {
+		// timestamp first, as in the CSV files
+		List<Column> ordered = new ArrayList<>();
+		for (int i = 0; i < d.getFieldData().size(); i++) {
+			Column column = d.getColumn(i);
+			if (column.getName().equals("timestamp")) {
+				ordered.add(0, column);
+			} else {
+				ordered.add(column);
+			}
+		}
+		Column[] columns = ordered.toArray(new Column[0]);
+		FlatTable schema = schema(columns);
+
+		try (FileChannel channel = new FileOutputStream(filePath).getChannel()) {
+			long position = 0;
+			if (!this.streamFormat) {
+				position += writeFully(channel, ByteBuffer.wrap(Arrays.copyOf(MAGIC, 8)));
+			}
+			position += writeMessage(channel, HEADER_SCHEMA, schema, 0);
+
+			List<long[]> blocks = new ArrayList<>();
+			ByteBuffer body = null;
+			int rowCount = d.getRowCount();
+			for (int from = 0; from < rowCount; from += this.batchRows) {
+				int to = (int) Math.min((long) from + this.batchRows, rowCount);
+				int rows = to - from;
+
+				// one node per column, with an empty validity buffer and a data buffer each
+				ByteBuffer nodes = ByteBuffer.allocate(columns.length * 16).order(ByteOrder.LITTLE_ENDIAN);
+				ByteBuffer buffers = ByteBuffer.allocate(columns.length * 32).order(ByteOrder.LITTLE_ENDIAN);
+				long bodyLength = 0;
+				for (Column column : columns) {
+					long length = column.typeChar == '?' ? (rows + 7) / 8
+							: (long) rows * ULogUtils.getFieldSize(column.getTypeStr());
+					nodes.putLong(rows).putLong(0);
+					buffers.putLong(bodyLength).putLong(0);
+					buffers.putLong(bodyLength).putLong(length);
+					bodyLength += align8(length);
+				}
+				if (bodyLength > Integer.MAX_VALUE) {
+					throw new IOException("Record batch of " + rows + " rows is too large, lower the batch size");
+				}
+
+				if (body == null || body.capacity() < bodyLength) {
+					body = ByteBuffer.allocateDirect((int) bodyLength).order(ByteOrder.LITTLE_ENDIAN);
+				}
+				body.clear();
+				for (Column column : columns) {
+					if (column.typeChar == '?') {
+						putBits((BooleanColumn) column, body, from, to);
+					} else {
+						column.putValues(body, from, to);
+					}
+					while ((body.position() & 7) != 0) {
+						body.put((byte) 0);
+					}
+				}
+				body.flip();
+
+				FlatTable batch = new FlatTable(3).add(0, 8, rows)
+						.add(1, new FlatStructVector(nodes.array(), columns.length))
+						.add(2, new FlatStructVector(buffers.array(), columns.length * 2));
+				long offset = position;
+				int metadataLength = writeMessage(channel, HEADER_RECORD_BATCH, batch, bodyLength);
+				position += metadataLength + writeFully(channel, body);
+				blocks.add(new long[] { offset, metadataLength, bodyLength });
+			}
+
+			// end of stream marker
+			ByteBuffer end = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+			end.putInt(CONTINUATION).putInt(0);
+			end.flip();
+			position += writeFully(channel, end);
+
+			if (!this.streamFormat) {
+				ByteBuffer blockStructs = ByteBuffer.allocate(blocks.size() * 24).order(ByteOrder.LITTLE_ENDIAN);
+				for (long[] block : blocks) {
+					blockStructs.putLong(block[0]).putInt((int) block[1]).putInt(0).putLong(block[2]);
+				}
+				FlatTable footer = new FlatTable(4).add(0, 2, METADATA_V5).add(1, schema)
+						.add(2, new FlatStructVector(new byte[0], 0))
+						.add(3, new FlatStructVector(blockStructs.array(), blocks.size()));
+				byte[] footerBytes = new FlatWriter().finish(footer);
+				ByteBuffer tail = ByteBuffer.allocate(footerBytes.length + 4 + MAGIC.length)
+						.order(ByteOrder.LITTLE_ENDIAN);
+				tail.put(footerBytes).putInt(footerBytes.length).put(MAGIC);
+				tail.flip();
+				writeFully(channel, tail);
+			}
+		}
+	}
+
+	private static FlatTable schema(Column[] columns) {
+		List<FlatObject> fields = new ArrayList<>();
+		for (Column column : columns) {
+			FlatTable type;
+			byte typeType;
+			switch (column.typeChar) {
+			case 'f':
+				typeType = TYPE_FLOATING_POINT;
+				type = new FlatTable(1).add(0, 2, PRECISION_SINGLE);
+				break;
+			case 'd':
+				typeType = TYPE_FLOATING_POINT;
+				type = new FlatTable(1).add(0, 2, PRECISION_DOUBLE);
+				break;
+			case '?':
+				typeType = TYPE_BOOL;
+				type = new FlatTable(0);
+				break;
+			default:
+				// char is written as its raw byte, like the other unsigned types
+				boolean signed = column.typeChar == 'b' || column.typeChar == 'h' || column.typeChar == 'i'
+						|| column.typeChar == 'q';
+				typeType = TYPE_INT;
+				type = new FlatTable(2).add(0, 4, ULogUtils.getFieldSize(column.getTypeStr()) * 8)
+						.add(1, 1, signed ? 1 : 0);
+				break;
+			}
+			// readers expect the children vector even for primitive fields
+			fields.add(new FlatTable(6).add(0, new FlatString(column.getName())).add(1, 1, 0).add(2, 1, typeType)
+					.add(3, type).add(5, new FlatTableVector(new ArrayList<>())));
+		}
+		return new FlatTable(2).add(0, 2, 0).add(1, new FlatTableVector(fields));
+	}
+
+	// Arrow booleans are bit-packed, least significant bit first
+	private static void putBits(BooleanColumn column, ByteBuffer target, int from, int to) {
+		boolean[] values = column.getValues();
+		int base = column.getOffset();
+		for (int i = from; i < to; i += 8) {
+			int bits = 0;
+			for (int j = 0; j < 8 && i + j < to; j++) {
+				if (values[base + i + j]) {
+					bits |= 1 << j;
+				}
+			}
+			target.put((byte) bits);
+		}
+	}
+
+	// Writes an encapsulated message: continuation marker, metadata length and the padded Message flatbuffer.
+	// Returns the number of bytes written.
+	private static int writeMessage(FileChannel channel, byte headerType, FlatTable header, long bodyLength)
+			throws IOException {
+		FlatTable message = new FlatTable(4).add(0, 2, METADATA_V5).add(1, 1, headerType).add(2, header)
+				.add(3, 8, bodyLength);
+		byte[] metadata = new FlatWriter().finish(message);
+		ByteBuffer out = ByteBuffer.allocate(8 + metadata.length).order(ByteOrder.LITTLE_ENDIAN);
+		out.putInt(CONTINUATION).putInt(metadata.length).put(metadata);
+		out.flip();
+		return writeFully(channel, out);
+	}
+
+	private static int writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		int length = buffer.remaining();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		return length;
+	}
+
+	private static long align8(long length) {
+		return (length + 7) & ~7L;
+	}
+
+	// FlatBuffers offsets always point forward, so every object is written before the objects it refers to, and
+	// those offsets are patched in once the objects are written.
+	private static final class FlatWriter {
+
+		private ByteBuffer buffer = ByteBuffer.allocate(512).order(ByteOrder.LITTLE_ENDIAN);
+
+		// The padded flatbuffer with root as its root table
+		byte[] finish(FlatObject root) {
+			putInt(0);
+			int rootPosition = root.write(this);
+			this.buffer.putInt(0, rootPosition);
+			pad(8, 0);
+			return Arrays.copyOf(this.buffer.array(), this.buffer.position());
+		}
+
+		int position() {
+			return this.buffer.position();
+		}
+
+		// Pads with zeros until position % alignment == remainder
+		void pad(int alignment, int remainder) {
+			while (position() % alignment != remainder) {
+				putByte(0);
+			}
+		}
+
+		private void ensure(int bytes) {
+			if (this.buffer.remaining() < bytes) {
+				ByteBuffer larger = ByteBuffer.allocate(Math.max(this.buffer.capacity() * 2, position() + bytes))
+						.order(ByteOrder.LITTLE_ENDIAN);
+				this.buffer.flip();
+				larger.put(this.buffer);
+				this.buffer = larger;
+			}
+		}
+
+		void putByte(int value) {
+			ensure(1);
+			this.buffer.put((byte) value);
+		}
+
+		void putShort(int value) {
+			ensure(2);
+			this.buffer.putShort((short) value);
+		}
+
+		void putInt(int value) {
+			ensure(4);
+			this.buffer.putInt(value);
+		}
+
+		void putBytes(byte[] bytes) {
+			ensure(bytes.length);
+			this.buffer.put(bytes);
+		}
+
+		void putScalar(int at, int size, long value) {
+			switch (size) {
+			case 1:
+				this.buffer.put(at, (byte) value);
+				break;
+			case 2:
+				this.buffer.putShort(at, (short) value);
+				break;
+			case 4:
+				this.buffer.putInt(at, (int) value);
+				break;
+			default:
+				this.buffer.putLong(at, value);
+				break;
+			}
+		}
+
+		// Points the offset field at the object written at target
+		void patchOffset(int at, int target) {
+			this.buffer.putInt(at, target - at);
+		}
+	}
+
+	private abstract static class FlatObject {
+		// Writes the object and returns its position
+		abstract int write(FlatWriter out);
+	}
+
+	private static final class FlatTable extends FlatObject {
+
+		private static final int REFERENCE = -1;
+
+		private final int[] sizes;
+		private final long[] values;
+		private final FlatObject[] references;
+
+		FlatTable(int slots) {
+			this.sizes = new int[slots];
+			this.values = new long[slots];
+			this.references = new FlatObject[slots];
+		}
+
+		FlatTable add(int slot, int size, long value) {
+			this.sizes[slot] = size;
+			this.values[slot] = value;
+			return this;
+		}
+
+		FlatTable add(int slot, FlatObject reference) {
+			this.sizes[slot] = REFERENCE;
+			this.references[slot] = reference;
+			return this;
+		}
+
+		@Override
+		int write(FlatWriter out) {
+			// The table starts at 4 mod 8, so after its vtable offset the fields are aligned by decreasing size
+			int[] fieldOffsets = new int[this.sizes.length];
+			int inlineSize = 4;
+			for (int size = 8; size > 0; size >>= 1) {
+				for (int slot = 0; slot < this.sizes.length; slot++) {
+					int fieldSize = this.sizes[slot] == REFERENCE ? 4 : this.sizes[slot];
+					if (fieldSize == size) {
+						fieldOffsets[slot] = inlineSize;
+						inlineSize += size;
+					}
+				}
+			}
+
+			out.pad(2, 0);
+			int vtable = out.position();
+			out.putShort(4 + 2 * this.sizes.length);
+			out.putShort(inlineSize);
+			for (int fieldOffset : fieldOffsets) {
+				out.putShort(fieldOffset);
+			}
+
+			out.pad(8, 4);
+			int table = out.position();
+			out.putInt(table - vtable);
+			for (int i = 4; i < inlineSize; i++) {
+				out.putByte(0);
+			}
+			for (int slot = 0; slot < this.sizes.length; slot++) {
+				if (this.sizes[slot] > 0) {
+					out.putScalar(table + fieldOffsets[slot], this.sizes[slot], this.values[slot]);
+				}
+			}
+			for (int slot = 0; slot < this.sizes.length; slot++) {
+				if (this.sizes[slot] == REFERENCE) {
+					out.patchOffset(table + fieldOffsets[slot], this.references[slot].write(out));
+				}
+			}
+			return table;
+		}
+	}
+
+	private static final class FlatTableVector extends FlatObject {
+
+		private final List<FlatObject> elements;
+
+		FlatTableVector(List<FlatObject> elements) {
+			this.elements = elements;
+		}
+
+		@Override
+		int write(FlatWriter out) {
+			out.pad(4, 0);
+			int vector = out.position();
+			out.putInt(this.elements.size());
+			for (int i = 0; i < this.elements.size(); i++) {
+				out.putInt(0);
+			}
+			for (int i = 0; i < this.elements.size(); i++) {
+				out.patchOffset(vector + 4 + 4 * i, this.elements.get(i).write(out));
+			}
+			return vector;
+		}
+	}
+
+	// Vector of structs with 8 byte alignment, given as their little-endian bytes
+	private static final class FlatStructVector extends FlatObject {
+
+		private final byte[] bytes;
+		private final int count;
+
+		FlatStructVector(byte[] bytes, int count) {
+			this.bytes = bytes;
+			this.count = count;
+		}
+
+		@Override
+		int write(FlatWriter out) {
+			out.pad(8, 4);
+			int vector = out.position();
+			out.putInt(this.count);
+			out.putBytes(this.bytes);
+			return vector;
+		}
+	}
+
+	private static final class FlatString extends FlatObject {
+
+		private final byte[] bytes;
+
+		FlatString(String value) {
+			this.bytes = value.getBytes(StandardCharsets.UTF_8);
+		}
+
+		@Override
+		int write(FlatWriter out) {
+			out.pad(4, 0);
+			int string = out.position();
+			out.putInt(this.bytes.length);
+			out.putBytes(this.bytes);
+			out.putByte(0);
+			return string;
+		}
+	}
+}
@@ -0,0 +1,298 @@
+package com.ulog.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Converts many logs to CSV in one JVM. Logs are parsed by a fixed pool of workers, and a log only starts once
+// its estimated heap use fits into the memory budget next to the logs already being converted.
+public class ULogBatch {
+
+	// Rough heap use per byte of log: the raw rows take about the size of the log, the decoded columns of the topic
+	// being written as much again for a log dominated by one topic, and the rest is headroom for the collector.
+	// A 27 MB log with one large topic converts in a 45 MB heap.
+	private static final int MEMORY_PER_LOG_BYTE = 3;
+	// Compressed logs usually inflate to about this many times their size
+	private static final int GZIP_RATIO = 8;
+	// Streamed logs hold a write buffer per topic, and PX4 logs commonly subscribe to 100 to 200 topics
+	private static final int STREAMING_TOPICS = 256;
+	// Inflated blocks queued or in use by the reader, plus the buffers of the gzip stream
+	private static final long INFLATE_MEMORY = (ULogInflatingChannel.QUEUED_BLOCKS + 1)
+			* (long) ULogInflatingChannel.BLOCK_SIZE + (2 << 16);
+	private static final String DONE_SUFFIX = ".done";
+
+	private final File outputDir;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private long memoryBudget = Runtime.getRuntime().maxMemory() / 2;
+	private String delimiter = ",";
+	private boolean force = false;
+	private boolean streaming = false;
+
+	private final AtomicInteger converted = new AtomicInteger();
+	private final AtomicInteger skipped = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+	private final AtomicLong bytesRead = new AtomicLong();
+
+	public static void main(String[] args) {
+		List<String> inputs = new ArrayList<>();
+		int threads = -1;
+		long memoryMb = -1;
+		String delimiter = null;
+		boolean force = false;
+		boolean streaming = false;
+
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.equals("--threads") && i + 1 < args.length) {
+				threads = Integer.parseInt(args[++i]);
+			} else if (arg.equals("--memory-mb") && i + 1 < args.length) {
+				memoryMb = Long.parseLong(args[++i]);
+			} else if (arg.equals("--delimiter") && i + 1 < args.length) {
+				delimiter = args[++i];
+			} else if (arg.equals("--force")) {
+				force = true;
+			} else if (arg.equals("--stream")) {
+				streaming = true;
+			} else {
+				inputs.add(arg);
+			}
+		}
+
+		if (inputs.size() < 2) {
+			System.out.println("ULog to CSV Batch Converter");
+			System.out.println("Usage: java -cp ulog-reader.jar com.ulog.parser.ULogBatch <input>... <output_dir>"
+					+ " [--threads N] [--memory-mb M] [--delimiter D] [--force] [--stream]");
+			System.out.println("Inputs are log files, directories (searched recursively) or globs such as 'logs/**/*.ulg'");
+			return;
+		}
+		String outputDir = inputs.remove(inputs.size() - 1);
+
+		ULogBatch batch = new ULogBatch(new File(outputDir)).setForce(force).setStreaming(streaming);
+		if (threads > 0) {
+			batch.setThreads(threads);
+		}
+		if (memoryMb > 0) {
+			batch.setMemoryBudget(memoryMb << 20);
+		}
+		if (delimiter != null) {
+			batch.setDelimiter(delimiter);
+		}
+
+		try {
+			Map<String, File> logs = findLogs(inputs);
+			System.out.println("Converting " + logs.size() + " logs to " + outputDir + " with " + batch.threads
+					+ " threads...");
+			boolean ok = batch.run(logs);
+			if (!ok) {
+				System.exit(1);
+			}
+		} catch (IOException | InterruptedException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	public ULogBatch(File outputDir) {
+		this.outputDir = outputDir;
+	}
+
+	public ULogBatch setThreads(int threads) {
+		this.threads = threads;
+		return this;
+	}
+
+	public ULogBatch setMemoryBudget(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+		return this;
+	}
+
+	public ULogBatch setDelimiter(String delimiter) {
+		this.delimiter = delimiter;
+		return this;
+	}
+
+	// Converts logs again even when their output is up to date
+	public ULogBatch setForce(boolean force) {
+		this.force = force;
+		return this;
+	}
+
+	// Writes rows while parsing instead of loading each log first, so a log needs almost no heap
+	public ULogBatch setStreaming(boolean streaming) {
+		this.streaming = streaming;
+		return this;
+	}
+
+	// Expands files, directories and glob patterns into the logs (.ulg and .ulg.gz) they name, keyed by their output
+	// name: the path below the searched directory without extension, so equal names in different directories
+	// do not collide. When a log is there both plain and compressed only the plain one is converted.
+	public static Map<String, File> findLogs(List<String> inputs) throws IOException {
+		Map<String, File> logs = new TreeMap<>();
+		for (String input : inputs) {
+			File file = new File(input);
+			if (file.isFile()) {
+				addLog(file.toPath().getFileName(), file, logs);
+			} else if (file.isDirectory()) {
+				addLogs(file.toPath(), null, logs);
+			} else {
+				// Walk from the longest leading part of the pattern without wildcards
+				String[] parts = input.split("[/\\\\]");
+				StringBuilder prefix = new StringBuilder();
+				for (int i = 0; i < parts.length - 1 && !hasWildcard(parts[i]); i++) {
+					prefix.append(parts[i]).append(File.separator);
+				}
+				Path base = Paths.get(prefix.length() > 0 ? prefix.toString() : ".");
+				if (!Files.isDirectory(base)) {
+					System.err.println("No logs found for " + input);
+					continue;
+				}
+				PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + input);
+				addLogs(base, matcher, logs);
+			}
+		}
+		return logs;
+	}
+
+	private static boolean hasWildcard(String part) {
+		return part.indexOf('*') >= 0 || part.indexOf('?') >= 0 || part.indexOf('[') >= 0 || part.indexOf('{') >= 0;
+	}
+
+	private static void addLogs(Path dir, PathMatcher matcher, Map<String, File> logs) throws IOException {
+		List<Path> matches;
+		try (Stream<Path> paths = Files.walk(dir)) {
+			matches = paths.filter(Files::isRegularFile)
+					.filter(p -> matcher != null ? matcher.matches(p.normalize()) || matcher.matches(p) : isLog(p))
+					.sorted().collect(Collectors.toList());
+		}
+		for (Path path : matches) {
+			addLog(dir.relativize(path), path.toFile(), logs);
+		}
+	}
+
+	private static void addLog(Path relative, File log, Map<String, File> logs) {
+		String name = relative.toString();
+		if (name.endsWith(".gz")) {
+			name = name.substring(0, name.length() - 3);
+		}
+		if (name.endsWith(".ulg")) {
+			name = name.substring(0, name.length() - 4);
+		}
+		File previous = logs.putIfAbsent(name, log);
+		if (previous != null && !previous.equals(log)) {
+			System.err.println("Skipping " + log + " - " + previous + " has the same output name");
+		}
+	}
+
+	private static boolean isLog(Path path) {
+		String name = path.getFileName().toString();
+		return name.endsWith(".ulg") || name.endsWith(".ulg.gz");
+	}
+
+	// Converts all logs and prints a throughput summary. Returns false when any log failed.
+	public boolean run(Map<String, File> logs) throws IOException, InterruptedException {
+		if (!this.outputDir.isDirectory() && !this.outputDir.mkdirs()) {
+			throw new IOException("Could not create output directory " + this.outputDir);
+		}
+
+		// Budget in KiB, so large budgets still fit into the permits of a Semaphore
+		int budgetKb = (int) Math.min(Integer.MAX_VALUE, Math.max(1, this.memoryBudget >> 10));
+		Semaphore memory = new Semaphore(budgetKb);
+		ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, this.threads));
+
+		long start = System.nanoTime();
+		for (Map.Entry<String, File> log : logs.entrySet()) {
+			workers.execute(() -> convert(log.getValue(), log.getKey(), memory, budgetKb));
+		}
+		workers.shutdown();
+		workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+
+		double megabytes = this.bytesRead.get() / (double) (1 << 20);
+		System.out.println(String.format(
+				"Converted %d logs, skipped %d up to date, %d failed in %.1f s (%.1f files/s, %.1f MB/s)",
+				this.converted.get(), this.skipped.get(), this.failed.get(), seconds, this.converted.get() / seconds,
+				megabytes / seconds));
+		return this.failed.get() == 0;
+	}
+
+	private void convert(File log, String outputName, Semaphore memory, int budgetKb) {
+		File output = new File(this.outputDir, outputName);
+		String outputPrefix = output.getPath();
+		File done = new File(outputPrefix + DONE_SUFFIX);
+
+		// The marker is only written once every CSV of the log was written, so a crashed run is converted again
+		if (!this.force && done.isFile() && done.lastModified() >= log.lastModified()) {
+			this.skipped.incrementAndGet();
+			return;
+		}
+
+		boolean gzip = log.getName().endsWith(".gz");
+		long estimate;
+		if (this.streaming) {
+			estimate = (long) STREAMING_TOPICS * ULogCsvStreamWriter.TOPIC_MEMORY + (gzip ? INFLATE_MEMORY : 0);
+		} else {
+			estimate = log.length() * MEMORY_PER_LOG_BYTE * (gzip ? GZIP_RATIO : 1);
+		}
+		// A log larger than the whole budget still runs, but on its own
+		int permits = (int) Math.min(budgetKb, Math.max(1, estimate >> 10));
+		try {
+			memory.acquire(permits);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		try {
+			done.delete();
+			if (!output.getParentFile().isDirectory() && !output.getParentFile().mkdirs()) {
+				throw new IOException("Could not create " + output.getParentFile());
+			}
+			int csvFailures;
+			if (this.streaming) {
+				csvFailures = ULogCsvStreamWriter.export(log.getPath(), outputPrefix, this.delimiter,
+						new ULogReaderOptions().setDisableStrExceptions(true));
+			} else {
+				ULogReader reader = new ULogReader(log.getPath(),
+						new ULogReaderOptions().setDisableStrExceptions(true));
+				if (reader.getInput() == null) {
+					this.failed.incrementAndGet();
+					System.err.println("Failed to read " + log);
+					return;
+				}
+				// logs already run in parallel, so each one is written by its own worker
+				csvFailures = reader.exportCsv(reader.getDataList(), outputPrefix, 0, Long.MAX_VALUE, this.delimiter, 1);
+			}
+			if (csvFailures > 0) {
+				this.failed.incrementAndGet();
+				System.err.println("Failed to write " + csvFailures + " CSV files of " + log);
+				return;
+			}
+			if (!done.createNewFile()) {
+				done.setLastModified(System.currentTimeMillis());
+			}
+			this.converted.incrementAndGet();
+			this.bytesRead.addAndGet(log.length());
+		} catch (IOException | RuntimeException e) {
+			this.failed.incrementAndGet();
+			System.err.println("Failed to convert " + log + ": " + e);
+		} finally {
+			memory.release(permits);
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package com.ulog.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Seekable input over a log that is already in memory
+public class ULogBufferInput implements ULogInput {
+
+	private final ByteBuffer data;
+	private final ByteBuffer view;
+	private int position = 0;
+
+	public ULogBufferInput(byte[] data) {
+		this(ByteBuffer.wrap(data));
+	}
+
+	// Reads the remaining bytes of data, without copying and without changing its position or limit
+	public ULogBufferInput(ByteBuffer data) {
+		this.data = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+		this.view = this.data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	@Override
+	public long length() {
+		return this.data.capacity();
+	}
+
+	@Override
+	public long position() {
+		return this.position;
+	}
+
+	@Override
+	public void seek(long position) throws IOException {
+		if (position < 0) {
+			throw new IOException("Negative seek offset");
+		}
+		this.position = (int) Math.min(position, this.data.capacity());
+	}
+
+	@Override
+	public ByteBuffer read(int length) {
+		int available = Math.max(0, Math.min(length, this.data.capacity() - this.position));
+		this.view.clear();
+		this.view.position(this.position);
+		this.view.limit(this.position + available);
+		this.position += available;
+		return this.view;
+	}
+
+	@Override
+	public ByteBuffer read(long position, int length) {
+		int start = (int) Math.min(position, this.data.capacity());
+		int available = Math.max(0, Math.min(length, this.data.capacity() - start));
+		ByteBuffer slice = this.data.duplicate();
+		slice.position(start);
+		slice.limit(start + available);
+		return slice.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	@Override
+	public void close() {
+	}
+}
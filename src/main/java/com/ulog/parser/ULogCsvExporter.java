@@ -0,0 +1,258 @@
+package com.ulog.parser;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Writes one CSV file per topic, like ulog2csv always has. Topics are split into blocks of rows that are
+// formatted on a pool of threads straight from the typed columns, without boxing; the blocks of a topic are then
+// written to its file in order by the calling thread. Only a few blocks per thread are in flight at any time,
+// so memory use does not grow with the size of the log. The text and byte buffers of a block are reused for
+// later blocks, the bytes in direct buffers that the file channel writes without another copy. Values are
+// formatted as by StringBuilder.append, so the files stay byte-identical to those of earlier versions.
+public class ULogCsvExporter {
+
+	private static final int BLOCKS_IN_FLIGHT_PER_THREAD = 4;
+
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int blockRows = 1 << 14;
+	private String delimiter = ",";
+
+	public ULogCsvExporter setThreads(int threads) {
+		this.threads = threads;
+		return this;
+	}
+
+	public ULogCsvExporter setBlockRows(int blockRows) {
+		this.blockRows = blockRows;
+		return this;
+	}
+
+	public ULogCsvExporter setDelimiter(String delimiter) {
+		this.delimiter = delimiter;
+		return this;
+	}
+
+	private static final class Block {
+		final Topic topic;
+		final CompletableFuture<ByteBuffer> text;
+		final boolean last;
+
+		Block(Topic topic, CompletableFuture<ByteBuffer> text, boolean last) {
+			this.topic = topic;
+			this.text = text;
+			this.last = last;
+		}
+	}
+
+	// Text buffer and encoder of one formatting task at a time
+	private static final class Formatter {
+		final StringBuilder text = new StringBuilder();
+		final CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	private static final class Topic {
+		final String filePath;
+		FileChannel channel;
+		boolean failed;
+
+		Topic(String filePath) {
+			this.filePath = filePath;
+		}
+	}
+
+	// Exports the rows of every topic between time_s and time_e (in seconds, 0 and Long.MAX_VALUE for no limit)
+	// to <outputFilePrefix>_<topic>_<multi id>.csv. Returns the number of files that could not be written.
+	public int export(List<Data> dataList, String outputFilePrefix, long time_s, long time_e) {
+		ExecutorService pool = this.threads > 1 ? Executors.newFixedThreadPool(this.threads) : null;
+		Executor executor = pool != null ? pool : Runnable::run;
+		int maxInFlight = Math.max(1, this.threads) * BLOCKS_IN_FLIGHT_PER_THREAD;
+		Deque<Block> inFlight = new ArrayDeque<>();
+		Queue<Formatter> formatters = new ConcurrentLinkedQueue<>();
+		Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+		int failures = 0;
+
+		try {
+			for (Data d : dataList) {
+				String sanitizedFileName = d.getName().replace("/", "_");
+				String filePath = String.format("%s_%s_%d.csv", outputFilePrefix, sanitizedFileName, d.getMultiId());
+
+				if (d.getColumn("timestamp") == null || d.getRowCount() == 0) {
+					System.err.println("Skipping " + filePath + " - No timestamp data found!");
+					continue;
+				}
+
+				int time_s_i = (time_s > 0) ? d.indexOf(time_s * 1_000_000) : 0;
+				int time_e_i = (time_e > 0 && time_e != Long.MAX_VALUE) ? d.indexOf(time_e * 1_000_000)
+						: d.getRowCount();
+
+				if (time_s_i >= time_e_i) {
+					System.err.println("Skipping " + filePath + " - Invalid timestamp range!");
+					continue;
+				}
+
+				// timestamp first, then the other fields in the order of the format
+				List<String> dataKeys = new ArrayList<>();
+				for (FieldData f : d.getFieldData()) {
+					dataKeys.add(f.getFieldName());
+				}
+				dataKeys.remove("timestamp");
+				dataKeys.add(0, "timestamp");
+				String header = String.join(this.delimiter, dataKeys);
+
+				Topic topic = new Topic(filePath);
+				CompletableFuture<Column[]> columns = CompletableFuture.supplyAsync(() -> {
+					Column[] decoded = new Column[dataKeys.size()];
+					for (int k = 0; k < decoded.length; k++) {
+						decoded[k] = d.getColumn(dataKeys.get(k));
+					}
+					return decoded;
+				}, executor);
+				for (int from = time_s_i; from < time_e_i; from += this.blockRows) {
+					int blockFrom = from;
+					int blockTo = (int) Math.min((long) from + this.blockRows, time_e_i);
+					String blockHeader = from == time_s_i ? header : null;
+					CompletableFuture<ByteBuffer> text = columns
+							.thenApplyAsync(c -> format(c, blockFrom, blockTo, blockHeader, formatters, buffers), executor);
+					inFlight.add(new Block(topic, text, blockTo == time_e_i));
+					while (inFlight.size() >= maxInFlight) {
+						failures += write(inFlight.poll(), buffers);
+					}
+				}
+			}
+			while (!inFlight.isEmpty()) {
+				failures += write(inFlight.poll(), buffers);
+			}
+		} finally {
+			if (pool != null) {
+				pool.shutdown();
+			}
+		}
+		return failures;
+	}
+
+	// Writes one block to the file of its topic, opening it for the first block and closing it after the last.
+	// The buffer of the block goes back to buffers. Returns 1 when this block completes a failed file.
+	private int write(Block block, Queue<ByteBuffer> buffers) {
+		Topic topic = block.topic;
+		if (!topic.failed) {
+			ByteBuffer text = null;
+			try {
+				text = block.text.join();
+				if (topic.channel == null) {
+					topic.channel = new FileOutputStream(topic.filePath).getChannel();
+				}
+				while (text.hasRemaining()) {
+					topic.channel.write(text);
+				}
+				buffers.add(text);
+			} catch (IOException | CompletionException e) {
+				if (text != null) {
+					buffers.add(text);
+				}
+				Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+				System.err.println("Error writing CSV: " + cause.getMessage());
+				topic.failed = true;
+			}
+		}
+		if (!block.last) {
+			return 0;
+		}
+
+		if (topic.channel != null) {
+			try {
+				topic.channel.close();
+			} catch (IOException e) {
+				if (!topic.failed) {
+					System.err.println("Error writing CSV: " + e.getMessage());
+					topic.failed = true;
+				}
+			}
+		}
+		if (topic.failed) {
+			return 1;
+		}
+		System.out.println("CSV file written successfully: " + topic.filePath);
+		return 0;
+	}
+
+	// Formats rows [from, to) in the default charset, after the header line when there is one, into a direct
+	// buffer taken from buffers
+	private ByteBuffer format(Column[] columns, int from, int to, String header, Queue<Formatter> formatters,
+			Queue<ByteBuffer> buffers) {
+		Formatter formatter = formatters.poll();
+		if (formatter == null) {
+			formatter = new Formatter();
+		}
+		try {
+			String newLine = System.lineSeparator();
+			StringBuilder text = formatter.text;
+			text.setLength(0);
+			if (header != null) {
+				text.append(header).append(newLine);
+			}
+			for (int i = from; i < to; i++) {
+				for (int k = 0; k < columns.length; k++) {
+					if (k > 0) {
+						text.append(this.delimiter);
+					}
+					columns[k].appendTo(text, i);
+				}
+				text.append(newLine);
+			}
+			return encode(formatter.encoder, text, buffers);
+		} finally {
+			formatters.add(formatter);
+		}
+	}
+
+	private static ByteBuffer encode(CharsetEncoder encoder, CharSequence text, Queue<ByteBuffer> buffers) {
+		int expected = (int) Math.min(Integer.MAX_VALUE, (long) (text.length() * encoder.averageBytesPerChar()) + 16);
+		ByteBuffer out = buffers.poll();
+		if (out == null || out.capacity() < expected) {
+			out = ByteBuffer.allocateDirect(expected);
+		}
+		out.clear();
+
+		CharBuffer in = CharBuffer.wrap(text);
+		encoder.reset();
+		boolean flushing = false;
+		while (true) {
+			CoderResult result = flushing ? encoder.flush(out) : encoder.encode(in, out, true);
+			if (result.isUnderflow()) {
+				if (flushing) {
+					break;
+				}
+				flushing = true;
+			} else if (result.isOverflow()) {
+				ByteBuffer larger = ByteBuffer.allocateDirect(out.capacity() * 2);
+				out.flip();
+				larger.put(out);
+				out = larger;
+			} else {
+				// malformed and unmappable input is replaced
+				throw new IllegalStateException(result.toString());
+			}
+		}
+		out.flip();
+		return out;
+	}
+}
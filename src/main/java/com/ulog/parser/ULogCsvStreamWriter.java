@@ -0,0 +1,236 @@
+package com.ulog.parser;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Writes the same CSV files as ulog2csv in a single pass over the log. Every row is formatted and written as it
+// is parsed, to a buffered writer per subscription, so neither rows nor Data are kept and heap use does not
+// depend on the size of the log. A file is only created once its topic has a row, as ulog2csv does.
+public class ULogCsvStreamWriter implements ULogVisitor, Closeable {
+
+	// A log can have a few hundred topics open at once, so each one only gets a small buffer
+	private static final int WRITE_BUFFER_SIZE = 1 << 13;
+	// Heap held by an open topic: the chars of its BufferedWriter, the 8 KiB byte buffer of the OutputStreamWriter's
+	// encoder and its header, offsets and type codes
+	static final int TOPIC_MEMORY = WRITE_BUFFER_SIZE * 2 + (1 << 13) + (1 << 10);
+
+	private final String outputFilePrefix;
+	private String delimiter = ",";
+	private final Map<Integer, Topic> topics = new LinkedHashMap<>();
+	private final StringBuilder line = new StringBuilder(256);
+	private final String newLine = System.lineSeparator();
+	private int failures = 0;
+
+	private static final class Topic {
+		final String filePath;
+		final String header;
+		final int[] offsets;
+		final char[] typeCodes;
+		Writer writer;
+		boolean failed;
+
+		Topic(String filePath, String header, int[] offsets, char[] typeCodes) {
+			this.filePath = filePath;
+			this.header = header;
+			this.offsets = offsets;
+			this.typeCodes = typeCodes;
+		}
+	}
+
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.out.println("ULog to CSV Streaming Converter");
+			System.out.println("Usage: java -cp ulog-reader.jar com.ulog.parser.ULogCsvStreamWriter <input_file.ulg>"
+					+ " <output_path_prefix> [delimiter]");
+			return;
+		}
+		String delimiter = (args.length > 2) ? args[2] : ",";
+		try {
+			int failures = export(args[0], args[1], delimiter, new ULogReaderOptions());
+			if (failures > 0) {
+				System.exit(1);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	// Converts logFile in one pass and returns the number of CSV files that could not be written. Indexed decode
+	// is turned off, since it would only deliver the rows of different topics concurrently.
+	public static int export(String logFile, String outputFilePrefix, String delimiter, ULogReaderOptions options)
+			throws IOException {
+		ULogReaderOptions sequential = options.copy().setIndexedDecode(false);
+		try (ULogCsvStreamWriter writer = new ULogCsvStreamWriter(outputFilePrefix).setDelimiter(delimiter)) {
+			ULogParser.parse(logFile, sequential, writer);
+			return writer.getFailures();
+		}
+	}
+
+	public ULogCsvStreamWriter(String outputFilePrefix) {
+		this.outputFilePrefix = outputFilePrefix;
+	}
+
+	public ULogCsvStreamWriter setDelimiter(String delimiter) {
+		this.delimiter = delimiter;
+		return this;
+	}
+
+	public synchronized int getFailures() {
+		return this.failures;
+	}
+
+	@Override
+	public synchronized void onSubscription(MessageAddLogged subscription) {
+		if (this.topics.containsKey(subscription.getMsgId())) {
+			return;
+		}
+		String sanitizedFileName = subscription.getMessageName().replace("/", "_");
+		String filePath = String.format("%s_%s_%d.csv", this.outputFilePrefix, sanitizedFileName,
+				subscription.getMultiId());
+
+		// timestamp first, then the other fields in the order of the format
+		List<String> dataKeys = new ArrayList<>();
+		for (FieldData f : subscription.getFieldData()) {
+			dataKeys.add(f.getFieldName());
+		}
+		if (!dataKeys.remove("timestamp")) {
+			System.err.println("Skipping " + filePath + " - No timestamp data found!");
+			this.topics.put(subscription.getMsgId(), null);
+			return;
+		}
+		dataKeys.add(0, "timestamp");
+
+		// Rows arrive as whole items, so fields are read at their offsets in the item even when projected
+		int[] offsets = new int[dataKeys.size()];
+		char[] typeCodes = new char[dataKeys.size()];
+		for (int k = 0; k < dataKeys.size(); k++) {
+			offsets[k] = subscription.getFieldOffset(dataKeys.get(k));
+			for (FieldData f : subscription.getFieldData()) {
+				if (f.getFieldName().equals(dataKeys.get(k))) {
+					typeCodes[k] = (char) ULogUtils.UNPACK_TYPES.get(f.getTypeStr())[0];
+					break;
+				}
+			}
+		}
+		this.topics.put(subscription.getMsgId(),
+				new Topic(filePath, String.join(this.delimiter, dataKeys), offsets, typeCodes));
+	}
+
+	// Synchronized because a parser with indexed decode calls this concurrently for different topics; the rows of
+	// one topic still arrive in file order
+	@Override
+	public synchronized void onData(int msgId, ByteBuffer row, long timestamp) {
+		Topic topic = this.topics.get(msgId);
+		if (topic == null || topic.failed) {
+			return;
+		}
+		StringBuilder line = this.line;
+		line.setLength(0);
+		int start = row.position();
+		for (int k = 0; k < topic.offsets.length; k++) {
+			if (k > 0) {
+				line.append(this.delimiter);
+			}
+			appendValue(line, row, start + topic.offsets[k], topic.typeCodes[k]);
+		}
+		line.append(this.newLine);
+
+		try {
+			if (topic.writer == null) {
+				topic.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(topic.filePath)),
+						WRITE_BUFFER_SIZE);
+				topic.writer.write(topic.header);
+				topic.writer.write(this.newLine);
+			}
+			topic.writer.append(line);
+		} catch (IOException e) {
+			System.err.println("Error writing CSV: " + e.getMessage());
+			topic.failed = true;
+			this.failures++;
+		}
+	}
+
+	// Same text as the decoded column value's toString()
+	private static void appendValue(StringBuilder target, ByteBuffer row, int at, char typeCode) {
+		switch (typeCode) {
+		case 'b':
+			target.append(row.get(at));
+			break;
+		case 'B':
+			target.append(Byte.toUnsignedInt(row.get(at)));
+			break;
+		case 'c':
+			target.append((char) row.get(at));
+			break;
+		case 'h':
+			target.append(row.getShort(at));
+			break;
+		case 'H':
+			target.append(Short.toUnsignedInt(row.getShort(at)));
+			break;
+		case 'i':
+			target.append(row.getInt(at));
+			break;
+		case 'I':
+			target.append(Integer.toUnsignedLong(row.getInt(at)));
+			break;
+		case 'q':
+		case 'Q':
+			target.append(row.getLong(at));
+			break;
+		case 'f':
+			target.append(row.getFloat(at));
+			break;
+		case 'd':
+			target.append(row.getDouble(at));
+			break;
+		case '?':
+			target.append(row.get(at) != 0);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown type character: " + typeCode);
+		}
+	}
+
+	@Override
+	public synchronized void onEnd() {
+		try {
+			close();
+		} catch (IOException e) {
+			// already counted per file
+		}
+	}
+
+	// Closes the files written so far; safe to call more than once
+	@Override
+	public synchronized void close() throws IOException {
+		for (Topic topic : this.topics.values()) {
+			if (topic == null || topic.writer == null) {
+				continue;
+			}
+			try {
+				topic.writer.close();
+				if (!topic.failed) {
+					System.out.println("CSV file written successfully: " + topic.filePath);
+				}
+			} catch (IOException e) {
+				if (!topic.failed) {
+					System.err.println("Error writing CSV: " + e.getMessage());
+					topic.failed = true;
+					this.failures++;
+				}
+			}
+			topic.writer = null;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package com.ulog.parser;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+public class ULogFileInput implements ULogInput {
+
+	// Reads are served from a read-ahead window, so the many small header reads and the seeks past skipped
+	// payloads do not each go to the file. The file pointer of the handle is therefore not the input position.
+	private static final int WINDOW_SIZE = 1 << 16;
+
+	private final RandomAccessFile fileHandle;
+	private final byte[] window = new byte[WINDOW_SIZE];
+	private long windowStart = 0;
+	private int windowLength = 0;
+	private long position = 0;
+	private byte[] buffer = new byte[0];
+
+	public ULogFileInput(RandomAccessFile fileHandle) {
+		this.fileHandle = fileHandle;
+	}
+
+	public RandomAccessFile getFileHandle() {
+		return this.fileHandle;
+	}
+
+	@Override
+	public long length() throws IOException {
+		return this.fileHandle.length();
+	}
+
+	@Override
+	public long position() throws IOException {
+		return this.position;
+	}
+
+	@Override
+	public void seek(long position) throws IOException {
+		if (position < 0) {
+			throw new IOException("Negative seek offset");
+		}
+		this.position = position;
+	}
+
+	@Override
+	public ByteBuffer read(int length) throws IOException {
+		ByteBuffer view;
+		if (length > WINDOW_SIZE) {
+			if (length > this.buffer.length) {
+				this.buffer = new byte[length];
+			}
+			int total = readAt(this.position, this.buffer, length);
+			view = ByteBuffer.wrap(this.buffer, 0, total);
+		} else {
+			if (this.position < this.windowStart || this.position + length > this.windowStart + this.windowLength) {
+				this.windowStart = this.position;
+				this.windowLength = readAt(this.position, this.window, WINDOW_SIZE);
+			}
+			int start = (int) (this.position - this.windowStart);
+			int available = Math.max(0, Math.min(length, this.windowLength - start));
+			view = ByteBuffer.wrap(this.window, start, available);
+		}
+		this.position += view.remaining();
+		return view.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private int readAt(long position, byte[] target, int length) throws IOException {
+		this.fileHandle.seek(position);
+		int total = 0;
+		while (total < length) {
+			int bytesRead = this.fileHandle.read(target, total, length - total);
+			if (bytesRead == -1) {
+				break;
+			}
+			total += bytesRead;
+		}
+		return total;
+	}
+
+	@Override
+	public ByteBuffer read(long position, int length) throws IOException {
+		FileChannel channel = this.fileHandle.getChannel();
+		ByteBuffer data = ByteBuffer.allocate((int) Math.max(0, Math.min(length, channel.size() - position)));
+		while (data.hasRemaining()) {
+			if (channel.read(data, position + data.position()) == -1) {
+				break;
+			}
+		}
+		data.flip();
+		return data.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.fileHandle.close();
+	}
+}
@@ -0,0 +1,221 @@
+package com.ulog.parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+// Sidecar index (<log>.ulg.idx) with everything needed to reopen a log without scanning it: the definitions
+// section is re-read from the log, the other data section messages are read at their recorded offsets and
+// data rows are read per topic on demand.
+public class ULogIndexFile {
+
+	public static final String EXTENSION = ".idx";
+
+	private static final int MAGIC = 0x554C4958; // "ULIX"
+	private static final int VERSION = 3;
+
+	private final long fileSize;
+	private final long lastModified;
+	private final long headerEndOffset;
+	private final long headerHash;
+	private final long dataEndOffset;
+	private final long lastTimestamp;
+	private final boolean fileCorrupt;
+	private final ULogOffsetIndex offsetIndex;
+
+	public ULogIndexFile(File logFile, ULogParser parser) throws IOException {
+		if (parser.getOffsetIndex() == null) {
+			throw new IllegalArgumentException("Parser did not build an offset index");
+		}
+		this.fileSize = logFile.length();
+		this.lastModified = logFile.lastModified();
+		this.headerEndOffset = parser.getHeaderEndOffset();
+		this.headerHash = hashHeader(logFile, this.headerEndOffset);
+		this.dataEndOffset = parser.getDataEndOffset();
+		this.lastTimestamp = parser.getLastTimestamp();
+		this.fileCorrupt = parser.isFileCorrupt();
+		this.offsetIndex = parser.getOffsetIndex();
+	}
+
+	private ULogIndexFile(long fileSize, long lastModified, long headerEndOffset, long headerHash,
+			long dataEndOffset, long lastTimestamp, boolean fileCorrupt, ULogOffsetIndex offsetIndex) {
+		this.fileSize = fileSize;
+		this.lastModified = lastModified;
+		this.headerEndOffset = headerEndOffset;
+		this.headerHash = headerHash;
+		this.dataEndOffset = dataEndOffset;
+		this.lastTimestamp = lastTimestamp;
+		this.fileCorrupt = fileCorrupt;
+		this.offsetIndex = offsetIndex;
+	}
+
+	public static File sidecarFor(String logFile) {
+		return new File(logFile + EXTENSION);
+	}
+
+	public long getHeaderEndOffset() {
+		return this.headerEndOffset;
+	}
+
+	public long getDataEndOffset() {
+		return this.dataEndOffset;
+	}
+
+	public long getLastTimestamp() {
+		return this.lastTimestamp;
+	}
+
+	public boolean isFileCorrupt() {
+		return this.fileCorrupt;
+	}
+
+	public ULogOffsetIndex getOffsetIndex() {
+		return this.offsetIndex;
+	}
+
+	public void write(File indexFile) throws IOException {
+		File tmpFile = new File(indexFile.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tmpFile), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(this.fileSize);
+			out.writeLong(this.lastModified);
+			out.writeLong(this.headerEndOffset);
+			out.writeLong(this.headerHash);
+			out.writeLong(this.dataEndOffset);
+			out.writeLong(this.lastTimestamp);
+			out.writeBoolean(this.fileCorrupt);
+
+			out.writeInt(this.offsetIndex.getMessageCount());
+			for (int i = 0; i < this.offsetIndex.getMessageCount(); i++) {
+				out.writeLong(this.offsetIndex.getMessageOffset(i));
+				out.writeLong(this.offsetIndex.getMessageTimestamp(i));
+			}
+
+			out.writeInt(this.offsetIndex.getCheckpointCount());
+			for (int i = 0; i < this.offsetIndex.getCheckpointCount(); i++) {
+				out.writeLong(this.offsetIndex.getCheckpointOffset(i));
+				out.writeLong(this.offsetIndex.getCheckpointTimestamp(i));
+			}
+
+			out.writeInt(this.offsetIndex.getMsgIds().size());
+			for (int msgId : this.offsetIndex.getMsgIds()) {
+				out.writeShort(msgId);
+				out.writeLong(this.offsetIndex.getFirstTimestamp(msgId));
+				out.writeLong(this.offsetIndex.getLastTimestamp(msgId));
+				int count = this.offsetIndex.getCount(msgId);
+				out.writeInt(count);
+				long previous = 0;
+				for (int i = 0; i < count; i++) {
+					long offset = this.offsetIndex.getOffset(msgId, i);
+					writeVarLong(out, offset - previous);
+					previous = offset;
+				}
+			}
+		}
+		Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	// Returns null when there is no index or it does not match the log (size, modification time or header)
+	public static ULogIndexFile read(File indexFile, File logFile) {
+		if (!indexFile.isFile() || !logFile.isFile()) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), 1 << 16))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return null;
+			}
+			long fileSize = in.readLong();
+			long lastModified = in.readLong();
+			long headerEndOffset = in.readLong();
+			long headerHash = in.readLong();
+			if (fileSize != logFile.length() || lastModified != logFile.lastModified()
+					|| headerEndOffset > fileSize || headerHash != hashHeader(logFile, headerEndOffset)) {
+				return null;
+			}
+			long dataEndOffset = in.readLong();
+			long lastTimestamp = in.readLong();
+			boolean fileCorrupt = in.readBoolean();
+
+			ULogOffsetIndex offsetIndex = new ULogOffsetIndex();
+			int messageCount = in.readInt();
+			for (int i = 0; i < messageCount; i++) {
+				offsetIndex.addMessage(in.readLong(), in.readLong());
+			}
+
+			int checkpointCount = in.readInt();
+			for (int i = 0; i < checkpointCount; i++) {
+				offsetIndex.addCheckpoint(in.readLong(), in.readLong());
+			}
+
+			int topicCount = in.readInt();
+			for (int t = 0; t < topicCount; t++) {
+				int msgId = in.readUnsignedShort();
+				long firstTimestamp = in.readLong();
+				long topicLastTimestamp = in.readLong();
+				long[] offsets = new long[in.readInt()];
+				long previous = 0;
+				for (int i = 0; i < offsets.length; i++) {
+					previous += readVarLong(in);
+					offsets[i] = previous;
+				}
+				offsetIndex.setTopic(msgId, offsets, firstTimestamp, topicLastTimestamp);
+			}
+
+			return new ULogIndexFile(fileSize, lastModified, headerEndOffset, headerHash, dataEndOffset, lastTimestamp,
+					fileCorrupt, offsetIndex);
+		} catch (IOException e) {
+			System.err.println("Ignoring unreadable index file " + indexFile + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	private static long hashHeader(File logFile, long headerEndOffset) throws IOException {
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[1 << 16];
+		try (RandomAccessFile file = new RandomAccessFile(logFile, "r")) {
+			long remaining = headerEndOffset;
+			while (remaining > 0) {
+				int bytesRead = file.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+				if (bytesRead == -1) {
+					break;
+				}
+				crc.update(buffer, 0, bytesRead);
+				remaining -= bytesRead;
+			}
+		}
+		return crc.getValue();
+	}
+
+	// Row offsets are stored as deltas in 7-bit groups, which keeps most of them to one or two bytes
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new EOFException("Malformed offset in index file");
+	}
+}
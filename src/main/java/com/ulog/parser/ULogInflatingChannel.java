@@ -0,0 +1,165 @@
+package com.ulog.parser;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+// Decompressed view of a gzip or raw deflate stream. Inflating runs on its own thread, which fills fixed-size
+// blocks and hands them over through a bounded queue, so decompression and parsing overlap. Wrap it in a
+// ULogStreamInput to parse it.
+public class ULogInflatingChannel implements ReadableByteChannel {
+
+	public enum Format {
+		GZIP, DEFLATE
+	}
+
+	static final int BLOCK_SIZE = 1 << 18;
+	static final int QUEUED_BLOCKS = 4;
+	// After close the inflater thread only finishes the read it is in
+	private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+	private static final class Block {
+		final byte[] data;
+		int length;
+		IOException error;
+
+		Block(byte[] data) {
+			this.data = data;
+		}
+	}
+
+	private final InputStream inflated;
+	private final BlockingQueue<Block> filled = new ArrayBlockingQueue<>(QUEUED_BLOCKS + 1);
+	private final BlockingQueue<Block> free = new ArrayBlockingQueue<>(QUEUED_BLOCKS + 1);
+	private final Thread inflater;
+	private Block current;
+	private int currentPosition;
+	private boolean endOfStream = false;
+	private volatile boolean closed = false;
+
+	public ULogInflatingChannel(InputStream compressed, Format format) throws IOException {
+		this.inflated = format == Format.GZIP ? new GZIPInputStream(compressed, 1 << 16)
+				: new InflaterInputStream(compressed, new Inflater(true), 1 << 16);
+		for (int i = 0; i < QUEUED_BLOCKS; i++) {
+			this.free.add(new Block(new byte[BLOCK_SIZE]));
+		}
+		this.inflater = new Thread(this::inflate, "ulog-inflate");
+		this.inflater.setDaemon(true);
+		this.inflater.start();
+	}
+
+	// Opens a log file as a stream input, decompressing it when it starts with the gzip magic bytes
+	public static ULogInput open(String logFile) throws IOException {
+		if (isGzip(logFile)) {
+			return new ULogStreamInput(new ULogInflatingChannel(new FileInputStream(logFile), Format.GZIP));
+		}
+		return new ULogStreamInput(new FileInputStream(logFile));
+	}
+
+	public static boolean isGzip(String logFile) throws IOException {
+		try (InputStream in = new FileInputStream(logFile)) {
+			return in.read() == 0x1F && in.read() == 0x8B;
+		}
+	}
+
+	private void inflate() {
+		try {
+			while (!this.closed) {
+				Block block = this.free.take();
+				block.length = 0;
+				boolean end = false;
+				try {
+					while (block.length < block.data.length && !this.closed) {
+						int bytesRead = this.inflated.read(block.data, block.length, block.data.length - block.length);
+						if (bytesRead == -1) {
+							end = true;
+							break;
+						}
+						block.length += bytesRead;
+					}
+				} catch (IOException e) {
+					block.error = e;
+					end = true;
+				}
+				if (block.length > 0 || block.error != null) {
+					this.filled.put(block);
+				}
+				if (end) {
+					Block last = new Block(new byte[0]);
+					last.length = -1;
+					this.filled.put(last);
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			// closed while waiting for the parser
+		} finally {
+			// The stream is only used by this thread, so it is closed here and never while a read inflates
+			try {
+				this.inflated.close();
+			} catch (IOException e) {
+				// nothing is read from it anymore
+			}
+		}
+	}
+
+	@Override
+	public int read(ByteBuffer target) throws IOException {
+		if (this.closed) {
+			throw new ClosedChannelException();
+		}
+		if (this.endOfStream) {
+			return -1;
+		}
+		if (this.current == null || this.currentPosition == this.current.length) {
+			if (this.current != null) {
+				this.free.add(this.current);
+			}
+			try {
+				this.current = this.filled.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for decompressed data", e);
+			}
+			this.currentPosition = 0;
+			if (this.current.error != null) {
+				this.endOfStream = true;
+				throw new IOException("Decompression failed", this.current.error);
+			}
+			if (this.current.length == -1) {
+				this.endOfStream = true;
+				this.current = null;
+				return -1;
+			}
+		}
+		int count = Math.min(target.remaining(), this.current.length - this.currentPosition);
+		target.put(this.current.data, this.currentPosition, count);
+		this.currentPosition += count;
+		return count;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return !this.closed;
+	}
+
+	@Override
+	// Stops the inflater thread, which closes the stream, and waits a bounded time for the stream to be closed
+	public void close() throws IOException {
+		this.closed = true;
+		this.inflater.interrupt();
+		try {
+			this.inflater.join(CLOSE_TIMEOUT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
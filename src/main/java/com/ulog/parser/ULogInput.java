@@ -0,0 +1,28 @@
+package com.ulog.parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public interface ULogInput extends Closeable {
+
+	// Total length, or Long.MAX_VALUE when it is not known (forward-only inputs)
+	long length() throws IOException;
+
+	// Forward-only inputs only support seeking back a limited distance and cannot serve arbitrary positional reads
+	default boolean isSeekable() {
+		return true;
+	}
+
+	long position() throws IOException;
+
+	void seek(long position) throws IOException;
+
+	// Returns a little-endian view of the next length bytes (fewer at end of input) and advances past them.
+	// The view is only valid until the next call on this input.
+	ByteBuffer read(int length) throws IOException;
+
+	// Returns a little-endian buffer with the length bytes at an absolute position (fewer at end of input)
+	// without moving the current position. May be called from several threads at once.
+	ByteBuffer read(long position, int length) throws IOException;
+}
@@ -0,0 +1,144 @@
+package com.ulog.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class ULogMappedInput implements ULogInput {
+
+	// Segments overlap by more than the largest possible message (3 byte header + 65535 byte payload), so
+	// every message lies completely inside one segment and can be returned as a view without copying.
+	static final int SEGMENT_OVERLAP = 1 << 17;
+	static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+	private final FileChannel channel;
+	private final long length;
+	private final int segmentSize;
+	private final long segmentStep;
+	private final MappedByteBuffer[] segments;
+	private long position = 0;
+	private byte[] spill = new byte[0];
+
+	public ULogMappedInput(FileChannel channel) throws IOException {
+		this(channel, DEFAULT_SEGMENT_SIZE);
+	}
+
+	ULogMappedInput(FileChannel channel, int segmentSize) throws IOException {
+		if (segmentSize <= SEGMENT_OVERLAP) {
+			throw new IllegalArgumentException("Segment size must be larger than " + SEGMENT_OVERLAP);
+		}
+		this.channel = channel;
+		this.length = channel.size();
+		this.segmentSize = segmentSize;
+		this.segmentStep = segmentSize - SEGMENT_OVERLAP;
+		this.segments = new MappedByteBuffer[(int) Math.max(1, (this.length + this.segmentStep - 1) / this.segmentStep)];
+	}
+
+	@Override
+	public long length() {
+		return this.length;
+	}
+
+	@Override
+	public long position() {
+		return this.position;
+	}
+
+	@Override
+	public void seek(long position) throws IOException {
+		if (position < 0) {
+			throw new IOException("Negative seek offset");
+		}
+		this.position = position;
+	}
+
+	@Override
+	public ByteBuffer read(int length) throws IOException {
+		int available = (int) Math.max(0, Math.min(length, this.length - this.position));
+		ByteBuffer view;
+
+		if (available == 0) {
+			view = ByteBuffer.allocate(0).order(ByteOrder.LITTLE_ENDIAN);
+		} else if (available <= SEGMENT_OVERLAP) {
+			int index = (int) (this.position / this.segmentStep);
+			view = segment(index);
+			int start = (int) (this.position - index * this.segmentStep);
+			view.limit(start + available);
+			view.position(start);
+		} else {
+			if (this.spill.length < available) {
+				this.spill = new byte[available];
+			}
+			int copied = 0;
+			while (copied < available) {
+				long pos = this.position + copied;
+				int index = (int) (pos / this.segmentStep);
+				ByteBuffer segment = segment(index);
+				int start = (int) (pos - index * this.segmentStep);
+				int count = Math.min(available - copied, (int) this.segmentStep - start);
+				segment.limit(start + count);
+				segment.position(start);
+				segment.get(this.spill, copied, count);
+				copied += count;
+			}
+			view = ByteBuffer.wrap(this.spill, 0, available).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		this.position += available;
+		return view;
+	}
+
+	@Override
+	public ByteBuffer read(long position, int length) throws IOException {
+		int available = (int) Math.max(0, Math.min(length, this.length - position));
+		if (available == 0 || available > SEGMENT_OVERLAP) {
+			byte[] data = new byte[available];
+			int copied = 0;
+			while (copied < available) {
+				long pos = position + copied;
+				int index = (int) (pos / this.segmentStep);
+				ByteBuffer segment = map(index).duplicate();
+				int start = (int) (pos - index * this.segmentStep);
+				int count = Math.min(available - copied, (int) this.segmentStep - start);
+				// the duplicate has whatever limit the last sequential read left on the segment
+				segment.limit(start + count);
+				segment.position(start);
+				segment.get(data, copied, count);
+				copied += count;
+			}
+			return ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		int index = (int) (position / this.segmentStep);
+		ByteBuffer view = map(index).duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		int start = (int) (position - index * this.segmentStep);
+		view.limit(start + available);
+		view.position(start);
+		return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private MappedByteBuffer segment(int index) throws IOException {
+		MappedByteBuffer segment = map(index);
+		segment.clear();
+		return segment;
+	}
+
+	private synchronized MappedByteBuffer map(int index) throws IOException {
+		MappedByteBuffer segment = this.segments[index];
+		if (segment == null) {
+			long start = index * this.segmentStep;
+			long size = Math.min(this.segmentSize, this.length - start);
+			segment = this.channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+			segment.order(ByteOrder.LITTLE_ENDIAN);
+			this.segments[index] = segment;
+		}
+		return segment;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+}
@@ -0,0 +1,289 @@
+package com.ulog.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+// Walks the samples of several topics together with logged messages, parameter changes and dropouts in global
+// timestamp order. Topics and message lists are normally in time order already, so they are merged lazily with a
+// binary heap holding one position per source: memory is O(k) for k sources and each step costs at most O(log k),
+// and topics are neither copied nor sorted. Samples with equal timestamps come in the order the sources were given,
+// and within a source in their original order, the same order as a stable sort of all samples. A topic whose
+// timestamps go backwards (clock jumps, recovered segments) is walked through a sorted array of its row numbers,
+// and a message list that is not in time order is sorted in a copy. Topics without a timestamp field are left out
+// with a warning.
+public class ULogMergeCursor {
+
+	private final List<Object> sources = new ArrayList<>();
+	private final List<Integer> sourceTypes = new ArrayList<>();
+	private int[] types;
+	private int[] positions;
+	private int[] sizes;
+	private long[] keys;
+	private Column[] timestamps;
+	private long[][] timestampValues;
+	private int[] timestampOffsets;
+	// Rows of a topic in time order, or null when the topic is in time order already
+	private int[][] rowOrders;
+	// Source indices, ordered as a min-heap on (keys[source], source)
+	private int[] heap;
+	private int heapSize = -1;
+	// Source that comes next after the first one in the heap, or -1 when there is only one
+	private int runnerUp = -1;
+
+	// Merges the topics with all logged messages, parameter changes and dropouts of reader
+	public static ULogMergeCursor of(ULogReader reader, List<Data> topics) {
+		return new ULogMergeCursor(topics, reader.getLoggedMessages(), reader.getLoggedMessagesTagged().values(),
+				reader.getChangedParameters(), reader.getDropouts());
+	}
+
+	// Any of the message lists may be null or empty
+	public ULogMergeCursor(List<Data> topics, List<MessageLogging> loggedMessages,
+			Collection<List<MessageLoggingTagged>> loggedMessagesTagged, List<ChangedParameter> changedParameters,
+			List<MessageDropout> dropouts) {
+		for (Data topic : topics) {
+			if (topic.getColumn("timestamp") != null) {
+				addSource(ULogUtils.MSG_TYPE_DATA, topic);
+			} else {
+				System.err.println("Skipping " + topic.getName() + " - No timestamp data found!");
+			}
+		}
+		addSource(ULogUtils.MSG_TYPE_LOGGING, loggedMessages);
+		if (loggedMessagesTagged != null) {
+			for (List<MessageLoggingTagged> messages : loggedMessagesTagged) {
+				addSource(ULogUtils.MSG_TYPE_LOGGING_TAGGED, messages);
+			}
+		}
+		addSource(ULogUtils.MSG_TYPE_DROPOUT, dropouts);
+		addSource(ULogUtils.MSG_TYPE_PARAMETER, changedParameters);
+
+		int count = this.sources.size();
+		this.positions = new int[count];
+		this.sizes = new int[count];
+		this.keys = new long[count];
+		this.timestamps = new Column[count];
+		this.timestampValues = new long[count][];
+		this.timestampOffsets = new int[count];
+		this.rowOrders = new int[count][];
+		this.heap = new int[count];
+		this.types = new int[count];
+		for (int source = 0; source < count; source++) {
+			this.types[source] = this.sourceTypes.get(source);
+			Object items = this.sources.get(source);
+			if (items instanceof Data) {
+				this.timestamps[source] = ((Data) items).getColumn("timestamp");
+				if (this.timestamps[source] instanceof LongColumn) {
+					this.timestampValues[source] = ((LongColumn) this.timestamps[source]).getValues();
+					this.timestampOffsets[source] = this.timestamps[source].getOffset();
+				}
+				this.sizes[source] = ((Data) items).getRowCount();
+				this.rowOrders[source] = sortedRows(source);
+			} else {
+				this.sizes[source] = ((List<?>) items).size();
+			}
+		}
+	}
+
+	private void addSource(int type, Data topic) {
+		this.sources.add(topic);
+		this.sourceTypes.add(type);
+	}
+
+	// Row numbers of a topic ordered by timestamp, keeping rows with equal timestamps in order, or null when the
+	// rows are in time order already
+	private int[] sortedRows(int source) {
+		int size = this.sizes[source];
+		int row = 1;
+		while (row < size && rowTimestamp(source, row) >= rowTimestamp(source, row - 1)) {
+			row++;
+		}
+		if (row >= size) {
+			return null;
+		}
+		Integer[] rows = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			rows[i] = i;
+		}
+		Arrays.sort(rows, Comparator.comparingLong(i -> rowTimestamp(source, i)));
+		int[] order = new int[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = rows[i];
+		}
+		return order;
+	}
+
+	private void addSource(int type, List<?> messages) {
+		if (messages == null) {
+			return;
+		}
+		for (int i = 1; i < messages.size(); i++) {
+			if (messageTimestamp(type, messages.get(i)) < messageTimestamp(type, messages.get(i - 1))) {
+				List<Object> sorted = new ArrayList<>(messages);
+				sorted.sort(Comparator.comparingLong(message -> messageTimestamp(type, message)));
+				messages = sorted;
+				break;
+			}
+		}
+		this.sources.add(messages);
+		this.sourceTypes.add(type);
+	}
+
+	// Moves to the next sample or message. Returns false once every source is exhausted.
+	public boolean next() {
+		if (this.heapSize < 0) {
+			this.heapSize = 0;
+			for (int source = 0; source < this.sources.size(); source++) {
+				if (this.sizes[source] > 0) {
+					this.keys[source] = timestampAt(source, 0);
+					this.heap[this.heapSize++] = source;
+				}
+			}
+			for (int i = this.heapSize / 2 - 1; i >= 0; i--) {
+				siftDown(i);
+			}
+			updateRunnerUp();
+			return this.heapSize > 0;
+		}
+		if (this.heapSize == 0) {
+			return false;
+		}
+
+		int source = this.heap[0];
+		int position = ++this.positions[source];
+		if (position < this.sizes[source]) {
+			this.keys[source] = timestampAt(source, position);
+			// Sources come in runs: while the first one stays ahead of the runner-up the heap is left as it is
+			if (this.runnerUp < 0 || before(source, this.runnerUp)) {
+				return true;
+			}
+		} else {
+			this.heap[0] = this.heap[--this.heapSize];
+		}
+		siftDown(0);
+		updateRunnerUp();
+		return this.heapSize > 0;
+	}
+
+	private void updateRunnerUp() {
+		if (this.heapSize < 2) {
+			this.runnerUp = -1;
+		} else if (this.heapSize == 2 || before(this.heap[1], this.heap[2])) {
+			this.runnerUp = this.heap[1];
+		} else {
+			this.runnerUp = this.heap[2];
+		}
+	}
+
+	private long timestampAt(int source, int position) {
+		if (this.timestamps[source] == null) {
+			return messageTimestamp(this.types[source], ((List<?>) this.sources.get(source)).get(position));
+		}
+		int[] order = this.rowOrders[source];
+		return rowTimestamp(source, order != null ? order[position] : position);
+	}
+
+	private long rowTimestamp(int source, int row) {
+		long[] values = this.timestampValues[source];
+		if (values != null) {
+			return values[this.timestampOffsets[source] + row];
+		}
+		Column timestamps = this.timestamps[source];
+		return timestamps instanceof LongColumn ? ((LongColumn) timestamps).getLong(row)
+				: (long) timestamps.getDouble(row);
+	}
+
+	private static long messageTimestamp(int type, Object item) {
+		switch (type) {
+		case ULogUtils.MSG_TYPE_LOGGING:
+			return ((MessageLogging) item).getTimestamp();
+		case ULogUtils.MSG_TYPE_LOGGING_TAGGED:
+			return ((MessageLoggingTagged) item).getTimestamp();
+		case ULogUtils.MSG_TYPE_PARAMETER:
+			return ((ChangedParameter) item).getTimestamp();
+		default:
+			return ((MessageDropout) item).getTimestamp();
+		}
+	}
+
+	private void siftDown(int i) {
+		int[] heap = this.heap;
+		int source = heap[i];
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= this.heapSize) {
+				break;
+			}
+			if (child + 1 < this.heapSize && before(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!before(heap[child], source)) {
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = source;
+	}
+
+	private boolean before(int a, int b) {
+		long keyA = this.keys[a];
+		long keyB = this.keys[b];
+		return keyA < keyB || (keyA == keyB && a < b);
+	}
+
+	private int current() {
+		if (this.heapSize <= 0) {
+			throw new IllegalStateException("The cursor is not on a sample, call next() first");
+		}
+		return this.heap[0];
+	}
+
+	// One of ULogUtils.MSG_TYPE_DATA, MSG_TYPE_LOGGING, MSG_TYPE_LOGGING_TAGGED, MSG_TYPE_PARAMETER (a changed
+	// parameter) or MSG_TYPE_DROPOUT
+	public int getMsgType() {
+		return this.types[current()];
+	}
+
+	public long getTimestamp() {
+		return this.keys[current()];
+	}
+
+	// Topic of the current sample, or null when the cursor is on a message
+	public Data getData() {
+		Object items = this.sources.get(current());
+		return items instanceof Data ? (Data) items : null;
+	}
+
+	// Row of the current sample in getData(), or the index of the current message in its list
+	public int getRow() {
+		int source = current();
+		int[] order = this.rowOrders[source];
+		return order != null ? order[this.positions[source]] : this.positions[source];
+	}
+
+	public MessageLogging getLogging() {
+		return (MessageLogging) getMessage(ULogUtils.MSG_TYPE_LOGGING);
+	}
+
+	public MessageLoggingTagged getLoggingTagged() {
+		return (MessageLoggingTagged) getMessage(ULogUtils.MSG_TYPE_LOGGING_TAGGED);
+	}
+
+	public ChangedParameter getParameterChange() {
+		return (ChangedParameter) getMessage(ULogUtils.MSG_TYPE_PARAMETER);
+	}
+
+	public MessageDropout getDropout() {
+		return (MessageDropout) getMessage(ULogUtils.MSG_TYPE_DROPOUT);
+	}
+
+	private Object getMessage(int type) {
+		int source = current();
+		if (this.types[source] != type) {
+			return null;
+		}
+		return ((List<?>) this.sources.get(source)).get(this.positions[source]);
+	}
+}
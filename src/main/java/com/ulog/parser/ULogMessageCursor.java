@@ -0,0 +1,210 @@
+package com.ulog.parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+public class ULogMessageCursor implements Closeable {
+
+	private final ULogInput input;
+	private final ULogParser parser;
+	private final MessageHeader header = new MessageHeader();
+	private final MessageData msgData = new MessageData();
+	private ByteBuffer payload;
+	private int payloadStart;
+	private long offset = -1;
+	private long lastTimestamp;
+
+	public ULogMessageCursor(String logFile, boolean memoryMapped) throws IOException {
+		this(ULogInflatingChannel.isGzip(logFile) ? ULogInflatingChannel.open(logFile)
+				: ULogParser.openInput(new RandomAccessFile(logFile, "r"), memoryMapped));
+	}
+
+	public ULogMessageCursor(ULogInput input) throws IOException {
+		this.input = input;
+		this.parser = new ULogParser(input, new ULogVisitor() {
+		});
+		this.parser.readFileHeader();
+		this.lastTimestamp = this.parser.getStartTimestamp();
+	}
+
+	// Moves to the next message. Only definitions (formats and subscriptions) and data timestamps are decoded
+	// on the way; everything else is left to the as* methods.
+	public boolean next() throws IOException {
+		while (true) {
+			this.offset = this.input.position();
+			ByteBuffer view = this.input.read(3);
+			if (view.remaining() < 3) {
+				return false;
+			}
+			this.header.initialize(view);
+
+			this.payload = this.input.read(this.header.getMsgSize());
+			this.payloadStart = this.payload.position();
+			if (this.payload.remaining() < this.header.getMsgSize()) {
+				return false;
+			}
+
+			try {
+				switch (this.header.getMsgType()) {
+				case ULogUtils.MSG_TYPE_FORMAT:
+					MessageFormat msgFormat = new MessageFormat(getBytes());
+					this.parser.getMessageFormats().put(msgFormat.getName(), msgFormat);
+					return true;
+
+				case ULogUtils.MSG_TYPE_ADD_LOGGED_MSG:
+					MessageAddLogged msgAddLogged = new MessageAddLogged(getBytes(), this.parser.getMessageFormats());
+					this.parser.getSubscriptions().put(msgAddLogged.getMsgId(), msgAddLogged);
+					return true;
+
+				case ULogUtils.MSG_TYPE_DATA:
+					boolean hasCorruption = this.msgData.initialize(this.payload, this.header,
+							this.parser.getSubscriptions(), this.parser);
+					if (hasCorruption) {
+						this.parser.markFileCorrupt();
+					} else if (this.msgData.getTimestamp() > this.lastTimestamp) {
+						this.lastTimestamp = this.msgData.getTimestamp();
+					}
+					return true;
+
+				case ULogUtils.MSG_TYPE_INFO:
+				case ULogUtils.MSG_TYPE_INFO_MULTIPLE:
+				case ULogUtils.MSG_TYPE_PARAMETER:
+				case ULogUtils.MSG_TYPE_PARAMETER_DEFAULT:
+				case ULogUtils.MSG_TYPE_REMOVE_LOGGED_MSG:
+				case ULogUtils.MSG_TYPE_LOGGING:
+				case ULogUtils.MSG_TYPE_LOGGING_TAGGED:
+				case ULogUtils.MSG_TYPE_DROPOUT:
+				case ULogUtils.MSG_TYPE_SYNC:
+				case ULogUtils.MSG_TYPE_FLAG_BITS:
+					return true;
+
+				default:
+					this.parser.skipUnknownMessage(this.header, this.input.position());
+					break;
+				}
+			} catch (RuntimeException e) {
+				this.parser.markFileCorrupt();
+			}
+		}
+	}
+
+	public MessageHeader getHeader() {
+		return this.header;
+	}
+
+	public int getMsgType() {
+		return this.header.getMsgType();
+	}
+
+	public int getMsgSize() {
+		return this.header.getMsgSize();
+	}
+
+	public long getOffset() {
+		return this.offset;
+	}
+
+	public long getLastTimestamp() {
+		return this.lastTimestamp;
+	}
+
+	public boolean isFileCorrupt() {
+		return this.parser.isFileCorrupt();
+	}
+
+	public MessageAddLogged getSubscription(int msgId) {
+		return this.parser.getSubscriptions().get(msgId);
+	}
+
+	// Payload and row share one view that is only valid until the next call to next().
+	public ByteBuffer getPayload() {
+		this.payload.limit(this.payloadStart + this.header.getMsgSize());
+		this.payload.position(this.payloadStart);
+		return this.payload;
+	}
+
+	public ByteBuffer getRow() {
+		MessageAddLogged subscription = asData().getSubscription();
+		if (subscription == null) {
+			return null;
+		}
+		this.payload.limit(this.payloadStart + 2 + subscription.getItemSize());
+		this.payload.position(this.payloadStart + 2);
+		return this.payload;
+	}
+
+	public byte[] getBytes() {
+		byte[] data = new byte[this.header.getMsgSize()];
+		getPayload().get(data);
+		this.payload.position(this.payloadStart);
+		return data;
+	}
+
+	public MessageData asData() {
+		checkType(ULogUtils.MSG_TYPE_DATA);
+		return this.msgData;
+	}
+
+	public MessageFormat asFormat() {
+		checkType(ULogUtils.MSG_TYPE_FORMAT);
+		return new MessageFormat(getBytes());
+	}
+
+	public MessageAddLogged asSubscription() {
+		checkType(ULogUtils.MSG_TYPE_ADD_LOGGED_MSG);
+		return getSubscription(Short.toUnsignedInt(getPayload().getShort(this.payloadStart + 1)));
+	}
+
+	public MessageInfo asInfo() {
+		if (getMsgType() == ULogUtils.MSG_TYPE_INFO_MULTIPLE) {
+			return new MessageInfo(getBytes(), true);
+		}
+		checkType(ULogUtils.MSG_TYPE_INFO);
+		return new MessageInfo(getBytes(), false);
+	}
+
+	public ChangedParameter asParameter() {
+		checkType(ULogUtils.MSG_TYPE_PARAMETER);
+		MessageInfo paramMsgInfo = new MessageInfo(getBytes(), false);
+		return new ChangedParameter(this.lastTimestamp, paramMsgInfo.getKey(), paramMsgInfo.getValue());
+	}
+
+	public MessageParameterDefault asParameterDefault() {
+		checkType(ULogUtils.MSG_TYPE_PARAMETER_DEFAULT);
+		return new MessageParameterDefault(getBytes());
+	}
+
+	public MessageLogging asLogging() {
+		checkType(ULogUtils.MSG_TYPE_LOGGING);
+		return new MessageLogging(getBytes(), this.header);
+	}
+
+	public MessageLoggingTagged asLoggingTagged() {
+		checkType(ULogUtils.MSG_TYPE_LOGGING_TAGGED);
+		return new MessageLoggingTagged(getBytes(), this.header);
+	}
+
+	public MessageDropout asDropout() {
+		checkType(ULogUtils.MSG_TYPE_DROPOUT);
+		return new MessageDropout(getBytes(), this.header, this.lastTimestamp);
+	}
+
+	public MessageFlagBits asFlagBits() {
+		checkType(ULogUtils.MSG_TYPE_FLAG_BITS);
+		return new MessageFlagBits(getBytes(), this.header);
+	}
+
+	private void checkType(int msgType) {
+		if (getMsgType() != msgType) {
+			throw new IllegalStateException(
+					"Current message is of type '" + (char) getMsgType() + "', not '" + (char) msgType + "'");
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.input.close();
+	}
+}
@@ -0,0 +1,174 @@
+package com.ulog.parser;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Writes every topic as a NumPy .npz archive with one .npy array per field, as numpy.savez does. Arrays use the
+// little-endian dtype of the ULog type and are copied from the decoded columns in bulk, so numpy.load gets the
+// exact values without any text conversion.
+public class ULogNumpyExporter {
+
+	// Rows copied into the write buffer at a time
+	private static final int CHUNK_ROWS = 1 << 16;
+	// .npy headers are padded so the array data starts at a multiple of this
+	private static final int HEADER_ALIGNMENT = 64;
+	private static final byte[] MAGIC = { (byte) 0x93, 'N', 'U', 'M', 'P', 'Y', 1, 0 };
+
+	private boolean compressed = false;
+
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.out.println("ULog to NumPy Converter");
+			System.out.println("Usage: java -cp ulog-reader.jar com.ulog.parser.ULogNumpyExporter <input_file.ulg>"
+					+ " <output_path_prefix> [--compressed]");
+			return;
+		}
+		boolean compressed = args.length > 2 && args[2].equals("--compressed");
+
+		System.out.println("Loading file: " + args[0]);
+		ULogReader reader = new ULogReader(args[0], null, true, false);
+		int failures = new ULogNumpyExporter().setCompressed(compressed).export(reader.getDataList(), args[1]);
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	// Deflates the arrays, as numpy.savez_compressed does
+	public ULogNumpyExporter setCompressed(boolean compressed) {
+		this.compressed = compressed;
+		return this;
+	}
+
+	// Writes <outputFilePrefix>_<topic>_<multi id>.npz for every topic with rows. Returns the number of files
+	// that could not be written.
+	public int export(List<Data> dataList, String outputFilePrefix) {
+		int failures = 0;
+		for (Data d : dataList) {
+			String sanitizedFileName = d.getName().replace("/", "_");
+			String filePath = String.format("%s_%s_%d.npz", outputFilePrefix, sanitizedFileName, d.getMultiId());
+			if (d.getRowCount() == 0) {
+				System.err.println("Skipping " + filePath + " - No data found!");
+				continue;
+			}
+			try {
+				write(d, filePath);
+				System.out.println("NumPy file written successfully: " + filePath);
+			} catch (IOException | RuntimeException e) {
+				System.err.println("Error writing NumPy: " + e.getMessage());
+				failures++;
+			}
+		}
+		return failures;
+	}
+
+	public void write(Data d, String filePath) throws IOException {
+		// timestamp first, as in the CSV files
+		List<Column> columns = new ArrayList<>();
+		for (int i = 0; i < d.getFieldData().size(); i++) {
+			Column column = d.getColumn(i);
+			if (column.getName().equals("timestamp")) {
+				columns.add(0, column);
+			} else {
+				columns.add(column);
+			}
+		}
+
+		ByteBuffer chunk = ByteBuffer.allocate(CHUNK_ROWS * 8).order(ByteOrder.LITTLE_ENDIAN);
+		try (ZipOutputStream zip = new ZipOutputStream(
+				new BufferedOutputStream(new FileOutputStream(filePath), 1 << 16))) {
+			for (Column column : columns) {
+				byte[] header = header(column);
+				long dataLength = (long) column.size() * ULogUtils.getFieldSize(column.getTypeStr());
+
+				ZipEntry entry = new ZipEntry(column.getName() + ".npy");
+				if (this.compressed) {
+					entry.setMethod(ZipEntry.DEFLATED);
+				} else {
+					// Stored entries need their size and checksum up front, so the column is read twice
+					CRC32 crc = new CRC32();
+					crc.update(header);
+					for (int from = 0; from < column.size(); from += CHUNK_ROWS) {
+						crc.update(fill(chunk, column, from), 0, chunk.limit());
+					}
+					entry.setMethod(ZipEntry.STORED);
+					entry.setSize(header.length + dataLength);
+					entry.setCompressedSize(header.length + dataLength);
+					entry.setCrc(crc.getValue());
+				}
+
+				zip.putNextEntry(entry);
+				zip.write(header);
+				for (int from = 0; from < column.size(); from += CHUNK_ROWS) {
+					zip.write(fill(chunk, column, from), 0, chunk.limit());
+				}
+				zip.closeEntry();
+			}
+		}
+	}
+
+	// Copies the rows [from, from + CHUNK_ROWS) of column into chunk and returns its backing array
+	private static byte[] fill(ByteBuffer chunk, Column column, int from) {
+		chunk.clear();
+		column.putValues(chunk, from, Math.min(from + CHUNK_ROWS, column.size()));
+		chunk.flip();
+		return chunk.array();
+	}
+
+	// Version 1.0 header of a one-dimensional array of the column's type
+	private static byte[] header(Column column) {
+		String dict = "{'descr': '" + descr(column.typeChar) + "', 'fortran_order': False, 'shape': (" + column.size()
+				+ ",), }";
+		int unpadded = MAGIC.length + 2 + dict.length() + 1;
+		int padding = (HEADER_ALIGNMENT - unpadded % HEADER_ALIGNMENT) % HEADER_ALIGNMENT;
+		StringBuilder text = new StringBuilder(dict);
+		for (int i = 0; i < padding; i++) {
+			text.append(' ');
+		}
+		text.append('\n');
+
+		byte[] dictBytes = text.toString().getBytes(StandardCharsets.US_ASCII);
+		ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 2 + dictBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+		header.put(MAGIC).putShort((short) dictBytes.length).put(dictBytes);
+		return header.array();
+	}
+
+	private static String descr(char typeChar) {
+		switch (typeChar) {
+		case 'b':
+			return "|i1";
+		case 'B':
+			return "|u1";
+		case 'c':
+			return "|S1";
+		case 'h':
+			return "<i2";
+		case 'H':
+			return "<u2";
+		case 'i':
+			return "<i4";
+		case 'I':
+			return "<u4";
+		case 'q':
+			return "<i8";
+		case 'Q':
+			return "<u8";
+		case 'f':
+			return "<f4";
+		case 'd':
+			return "<f8";
+		case '?':
+			return "|b1";
+		default:
+			throw new IllegalArgumentException("Unknown type character: " + typeChar);
+		}
+	}
+}
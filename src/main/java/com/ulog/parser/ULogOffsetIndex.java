@@ -0,0 +1,162 @@
+package com.ulog.parser;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+public class ULogOffsetIndex {
+
+	private final Map<Integer, Offsets> offsets = new TreeMap<>();
+	private long[] messageOffsets = new long[64];
+	private long[] messageTimestamps = new long[64];
+	private int messageCount = 0;
+	private long[] checkpointOffsets = new long[16];
+	private long[] checkpointTimestamps = new long[16];
+	private int checkpointCount = 0;
+
+	private static final class Offsets {
+		long[] values = new long[64];
+		int count = 0;
+		long firstTimestamp = 0;
+		long lastTimestamp = 0;
+	}
+
+	// Records the absolute file offset of a data row (the byte after the msg_id) and its timestamp
+	public void add(int msgId, long offset, long timestamp) {
+		Offsets entry = this.offsets.get(msgId);
+		if (entry == null) {
+			entry = new Offsets();
+			entry.firstTimestamp = timestamp;
+			this.offsets.put(msgId, entry);
+		}
+		if (entry.count == entry.values.length) {
+			entry.values = Arrays.copyOf(entry.values, entry.values.length * 2);
+		}
+		entry.values[entry.count++] = offset;
+		entry.lastTimestamp = timestamp;
+	}
+
+	// Records the file offset (at the message header) of any other message in the data section, together
+	// with the last data timestamp seen before it.
+	public void addMessage(long offset, long lastTimestamp) {
+		if (this.messageCount == this.messageOffsets.length) {
+			this.messageOffsets = Arrays.copyOf(this.messageOffsets, this.messageCount * 2);
+			this.messageTimestamps = Arrays.copyOf(this.messageTimestamps, this.messageCount * 2);
+		}
+		this.messageOffsets[this.messageCount] = offset;
+		this.messageTimestamps[this.messageCount] = lastTimestamp;
+		this.messageCount++;
+	}
+
+	// Records a message boundary together with the largest data timestamp seen before it. These timestamps
+	// never decrease, so checkpoints can be binary searched by time.
+	public void addCheckpoint(long offset, long timestamp) {
+		if (this.checkpointCount == this.checkpointOffsets.length) {
+			this.checkpointOffsets = Arrays.copyOf(this.checkpointOffsets, this.checkpointCount * 2);
+			this.checkpointTimestamps = Arrays.copyOf(this.checkpointTimestamps, this.checkpointCount * 2);
+		}
+		this.checkpointOffsets[this.checkpointCount] = offset;
+		this.checkpointTimestamps[this.checkpointCount] = timestamp;
+		this.checkpointCount++;
+	}
+
+	public int getCheckpointCount() {
+		return this.checkpointCount;
+	}
+
+	public long getCheckpointOffset(int index) {
+		return this.checkpointOffsets[index];
+	}
+
+	public long getCheckpointTimestamp(int index) {
+		return this.checkpointTimestamps[index];
+	}
+
+	// Returns the index of the last checkpoint before which all data timestamps are below timestamp, or -1
+	public int findCheckpoint(long timestamp) {
+		int low = 0;
+		int high = this.checkpointCount - 1;
+		int found = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (this.checkpointTimestamps[mid] < timestamp) {
+				found = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return found;
+	}
+
+	// Largest file offset the index knows of; rows after it are not indexed, e.g. when the log grew since
+	public long getEndOffset() {
+		long end = 0;
+		for (Offsets entry : this.offsets.values()) {
+			if (entry.count > 0) {
+				end = Math.max(end, entry.values[entry.count - 1]);
+			}
+		}
+		if (this.messageCount > 0) {
+			end = Math.max(end, this.messageOffsets[this.messageCount - 1]);
+		}
+		if (this.checkpointCount > 0) {
+			end = Math.max(end, this.checkpointOffsets[this.checkpointCount - 1]);
+		}
+		return end;
+	}
+
+	public Set<Integer> getMsgIds() {
+		return this.offsets.keySet();
+	}
+
+	public int getCount(int msgId) {
+		Offsets entry = this.offsets.get(msgId);
+		return entry != null ? entry.count : 0;
+	}
+
+	public long getOffset(int msgId, int index) {
+		Offsets entry = this.offsets.get(msgId);
+		if (entry == null || index >= entry.count) {
+			throw new IndexOutOfBoundsException("No row " + index + " for message id " + msgId);
+		}
+		return entry.values[index];
+	}
+
+	public long[] getOffsets(int msgId) {
+		Offsets entry = this.offsets.get(msgId);
+		return entry != null ? Arrays.copyOf(entry.values, entry.count) : new long[0];
+	}
+
+	public long getFirstTimestamp(int msgId) {
+		Offsets entry = this.offsets.get(msgId);
+		return entry != null ? entry.firstTimestamp : 0;
+	}
+
+	public long getLastTimestamp(int msgId) {
+		Offsets entry = this.offsets.get(msgId);
+		return entry != null ? entry.lastTimestamp : 0;
+	}
+
+	public int getMessageCount() {
+		return this.messageCount;
+	}
+
+	public long getMessageOffset(int index) {
+		return this.messageOffsets[index];
+	}
+
+	public long getMessageTimestamp(int index) {
+		return this.messageTimestamps[index];
+	}
+
+	void setTopic(int msgId, long[] rowOffsets, long firstTimestamp, long lastTimestamp) {
+		Offsets entry = new Offsets();
+		entry.values = rowOffsets;
+		entry.count = rowOffsets.length;
+		entry.firstTimestamp = firstTimestamp;
+		entry.lastTimestamp = lastTimestamp;
+		this.offsets.put(msgId, entry);
+	}
+}
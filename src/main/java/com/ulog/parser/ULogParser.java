@@ -0,0 +1,896 @@
+package com.ulog.parser;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+public class ULogParser {
+
+	private static final int INDEXED_READ_WINDOW = 1 << 17;
+	private static final int CHECKPOINT_INTERVAL = 1 << 20;
+
+	private final ULogInput input;
+	private final ULogVisitor visitor;
+	private List<String> messageNameFilterList;
+	private boolean debug = false;
+	private int fileVersion = 0;
+	private long startTimestamp = 0;
+	private long lastTimestamp = 0;
+	private boolean fileCorrupt = false;
+	private boolean hasSync = true;
+	private long headerEndOffset = 0L;
+	private long dataEndOffset = 0L;
+	private byte[] compatFlags = new byte[8];
+	private byte[] incompatFlags = new byte[8];
+	private List<Long> appendedOffsets = new ArrayList<>();
+	private Map<String, MessageFormat> messageFormats = new HashMap<>();
+	private Map<Integer, MessageAddLogged> subscriptions = new HashMap<>();
+	private Set<Integer> filteredMessageIds = new HashSet<>();
+	private Set<String> missingMessageIds = new HashSet<>();
+	private ULogOffsetIndex offsetIndex;
+	private Executor indexedDecodeExecutor;
+	private long nextCheckpoint = 0;
+	private volatile boolean stopped = false;
+	private Map<String, FieldProjection> projection;
+	// Topics whose projection was reported to select unknown fields, so multi-instance topics are reported once
+	private Set<String> reportedProjections = new HashSet<>();
+	private boolean metadataOnly = false;
+	private Map<Integer, ULogTopicStats> topicStats = new TreeMap<>();
+	private ULogRecoveryReport recoveryReport = new ULogRecoveryReport();
+
+	public ULogParser(ULogInput input, ULogVisitor visitor) {
+		this(input, visitor, null);
+	}
+
+	public ULogParser(ULogInput input, ULogVisitor visitor, List<String> messageNameFilterList) {
+		this.input = input;
+		this.visitor = visitor;
+		this.messageNameFilterList = messageNameFilterList;
+	}
+
+	public static void parse(String logFile, ULogReaderOptions options, ULogVisitor visitor) throws IOException {
+		try (ULogInput input = ULogInflatingChannel.isGzip(logFile) ? ULogInflatingChannel.open(logFile)
+				: openInput(new RandomAccessFile(logFile, "r"), options.isMemoryMapped())) {
+			parse(input, options, visitor);
+		}
+	}
+
+	// Parses any input; the indexed decode option is ignored for forward-only inputs
+	public static void parse(ULogInput input, ULogReaderOptions options, ULogVisitor visitor) throws IOException {
+		ULogUtils.disableStrExceptions = options.isDisableStrExceptions();
+		ULogParser parser = new ULogParser(input, visitor, options.getMessageNameFilterList());
+		parser.setProjection(options.getProjection());
+		parser.setMetadataOnly(options.isMetadataOnly());
+		if (options.isIndexedDecode() && input.isSeekable()) {
+			parser.setIndexedDecode(options.getDecodeExecutor() != null ? options.getDecodeExecutor()
+					: ForkJoinPool.commonPool());
+		}
+		parser.parse(options.isParseHeaderOnly());
+	}
+
+	static ULogInput openInput(RandomAccessFile fileHandle, boolean memoryMapped) throws IOException {
+		if (memoryMapped) {
+			return new ULogMappedInput(fileHandle.getChannel());
+		}
+		return new ULogFileInput(fileHandle);
+	}
+
+	public void parse(boolean parseHeaderOnly) throws IOException {
+		readFileHeader();
+		this.lastTimestamp = this.startTimestamp;
+		readFileDefinitions();
+
+		this.headerEndOffset = this.input.position();
+		if (this.debug) {
+			System.out.println("Header end offset: " + this.headerEndOffset);
+		}
+		this.dataEndOffset = this.headerEndOffset;
+
+		if (!parseHeaderOnly) {
+			if (this.debug && this.hasDataAppended() && this.appendedOffsets != null
+					&& this.appendedOffsets.size() > 0) {
+				System.out.println("This file has data appended");
+			}
+			readDataSections(-1);
+
+			if (this.offsetIndex != null) {
+				decodeIndexedData();
+			}
+		}
+
+		this.visitor.onEnd();
+	}
+
+	// Rebuilds the parse state from a sidecar index without scanning the data section. Definitions are read as
+	// usual and the other indexed messages at their recorded offsets; data rows are not read at all but are
+	// available to the caller through getOffsetIndex().
+	public void parse(ULogIndexFile indexFile) throws IOException {
+		readFileHeader();
+		this.lastTimestamp = this.startTimestamp;
+		readFileDefinitions();
+		this.headerEndOffset = this.input.position();
+
+		ULogOffsetIndex index = indexFile.getOffsetIndex();
+		replayIndexedMessages(index, Long.MAX_VALUE);
+
+		this.offsetIndex = index;
+		this.lastTimestamp = indexFile.getLastTimestamp();
+		this.dataEndOffset = indexFile.getDataEndOffset();
+		this.fileCorrupt = indexFile.isFileCorrupt();
+		this.visitor.onEnd();
+	}
+
+	// Parses the data section from the last checkpoint of index whose data is all older than timestamp, or from
+	// the start without an index. The indexed messages before that point are replayed first, so subscriptions,
+	// parameters and the other state are the same as after a full read. The visitor can end the read early
+	// with stop().
+	public void parseFrom(ULogOffsetIndex index, long timestamp) throws IOException {
+		readFileHeader();
+		this.lastTimestamp = this.startTimestamp;
+		readFileDefinitions();
+		this.headerEndOffset = this.input.position();
+
+		long start = this.headerEndOffset;
+		int checkpoint = index != null ? index.findCheckpoint(timestamp) : -1;
+		if (checkpoint >= 0) {
+			start = index.getCheckpointOffset(checkpoint);
+			replayIndexedMessages(index, start);
+			this.lastTimestamp = index.getCheckpointTimestamp(checkpoint);
+			this.input.seek(start);
+		}
+
+		readDataSections(start);
+
+		this.visitor.onEnd();
+	}
+
+	// Continues the data section of a log that previous has parsed before, from the first message previous did
+	// not read. Formats, subscriptions and the other parse state are taken over from previous, and the flag bits
+	// are read again for offsets of data that was appended since.
+	public void parseAppended(ULogParser previous) throws IOException {
+		this.messageNameFilterList = previous.messageNameFilterList;
+		this.debug = previous.debug;
+		this.fileVersion = previous.fileVersion;
+		this.startTimestamp = previous.startTimestamp;
+		this.lastTimestamp = previous.lastTimestamp;
+		this.fileCorrupt = previous.fileCorrupt;
+		this.hasSync = previous.hasSync;
+		this.headerEndOffset = previous.headerEndOffset;
+		this.dataEndOffset = previous.dataEndOffset;
+		this.messageFormats = previous.messageFormats;
+		this.subscriptions = previous.subscriptions;
+		this.filteredMessageIds = previous.filteredMessageIds;
+		this.missingMessageIds = previous.missingMessageIds;
+		this.projection = previous.projection;
+		this.reportedProjections = previous.reportedProjections;
+		this.metadataOnly = previous.metadataOnly;
+		this.topicStats = previous.topicStats;
+		this.recoveryReport = previous.recoveryReport;
+
+		readFlagBits();
+		long start = this.dataEndOffset;
+		this.input.seek(start);
+		readDataSections(start);
+
+		this.visitor.onEnd();
+	}
+
+	// Reads the data section from the current position, jumping to the offsets of appended data after start. An
+	// appended offset past the end of the input has not been written yet, so reading ends before it.
+	private void readDataSections(long start) throws IOException {
+		if (this.hasDataAppended() && this.appendedOffsets != null) {
+			for (Long offset : this.appendedOffsets) {
+				if (offset > start && !this.stopped) {
+					readFileData(offset);
+					if (offset > this.input.length()) {
+						return;
+					}
+					this.input.seek(offset);
+				}
+			}
+		}
+		if (!this.stopped) {
+			readFileData(null);
+		}
+	}
+
+	private void readFlagBits() throws IOException {
+		MessageHeader header = new MessageHeader();
+		ByteBuffer view = this.input.read(16, 3);
+		if (view.remaining() < 3) {
+			return;
+		}
+		header.initialize(view);
+		if (header.getMsgType() != ULogUtils.MSG_TYPE_FLAG_BITS) {
+			return;
+		}
+		view = this.input.read(16 + 3, header.getMsgSize());
+		byte[] data = new byte[header.getMsgSize()];
+		view.get(data, 0, view.remaining());
+		MessageFlagBits msgFlagBits = new MessageFlagBits(data, header);
+		this.compatFlags = msgFlagBits.getCompatFlags();
+		this.incompatFlags = msgFlagBits.getInCompatFlags();
+		this.appendedOffsets = msgFlagBits.getAppendedOffsets();
+		this.visitor.onFlagBits(msgFlagBits);
+	}
+
+	// Ends the current parse after the message that is being handled
+	public void stop() {
+		this.stopped = true;
+	}
+
+	// File position after the message that is being handled
+	long getPosition() throws IOException {
+		return this.input.position();
+	}
+
+	private void replayIndexedMessages(ULogOffsetIndex index, long untilOffset) throws IOException {
+		MessageHeader header = new MessageHeader();
+		MessageData msgData = new MessageData();
+		for (int i = 0; i < index.getMessageCount() && index.getMessageOffset(i) < untilOffset; i++) {
+			long offset = index.getMessageOffset(i);
+			header.initialize(this.input.read(offset, 3));
+			ByteBuffer view = this.input.read(offset + 3, header.getMsgSize());
+			this.lastTimestamp = index.getMessageTimestamp(i);
+			handleMessage(header, view, msgData, offset + 3 + header.getMsgSize());
+		}
+	}
+
+	// Switches to a two-phase parse. The data pass only validates D messages and records the offsets of their
+	// rows per msg_id; the rows are then read back with positional reads, one task per topic on the executor.
+	// onData is called from those tasks: in file order within a topic, but concurrently across topics.
+	public void setIndexedDecode(Executor executor) {
+		this.offsetIndex = new ULogOffsetIndex();
+		this.indexedDecodeExecutor = executor;
+	}
+
+	// Skips the payload of D messages and only counts them per topic (see getTopicStats); all other messages
+	// are parsed as usual.
+	public void setMetadataOnly(boolean metadataOnly) {
+		this.metadataOnly = metadataOnly;
+	}
+
+	public Map<Integer, ULogTopicStats> getTopicStats() {
+		return this.topicStats;
+	}
+
+	// Restricts topics to the selected fields, keyed by topic name. Topics without an entry keep all fields.
+	public void setProjection(Map<String, List<String>> projection) {
+		if (projection == null) {
+			this.projection = null;
+			return;
+		}
+		this.projection = new HashMap<>();
+		for (Map.Entry<String, List<String>> entry : projection.entrySet()) {
+			this.projection.put(entry.getKey(), new FieldProjection(entry.getValue()));
+		}
+	}
+
+	// A projection that selects fields the topic does not have is most likely a typo, and one that selects none
+	// of its fields leaves the whole topic out, so both are reported instead of passing silently
+	private void reportUnmatchedProjection(MessageAddLogged subscription, FieldProjection fieldProjection) {
+		List<String> unmatched = fieldProjection.getUnmatchedPatterns(subscription.getFieldData());
+		if (unmatched.isEmpty() || !this.reportedProjections.add(subscription.getMessageName())) {
+			return;
+		}
+		boolean none = unmatched.size() == fieldProjection.getPatternCount();
+		System.err.println("Projection of " + subscription.getMessageName() + ": no field matches " + unmatched
+				+ (none ? ", leaving the topic out" : ""));
+	}
+
+	public ULogOffsetIndex getOffsetIndex() {
+		return this.offsetIndex;
+	}
+
+	private void decodeIndexedData() throws IOException {
+		List<CompletableFuture<Void>> tasks = new ArrayList<>();
+		for (int msgId : this.offsetIndex.getMsgIds()) {
+			MessageAddLogged subscription = this.subscriptions.get(msgId);
+			if (subscription != null) {
+				tasks.add(CompletableFuture.runAsync(() -> decodeIndexedTopic(msgId, subscription),
+						this.indexedDecodeExecutor));
+			}
+		}
+		try {
+			CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof UncheckedIOException) {
+				throw ((UncheckedIOException) e.getCause()).getCause();
+			}
+			throw e;
+		}
+	}
+
+	private void decodeIndexedTopic(int msgId, MessageAddLogged subscription) {
+		try {
+			readIndexedRows(this.input, this.offsetIndex, msgId, subscription, this.visitor);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// Reads the indexed rows of one topic into visitor.onData. Rows are read in windows of up to
+	// INDEXED_READ_WINDOW bytes that span as many consecutive rows as fit, so sparse topics only read their own
+	// rows and dense topics read few large blocks.
+	static void readIndexedRows(ULogInput input, ULogOffsetIndex index, int msgId, MessageAddLogged subscription,
+			ULogVisitor visitor) throws IOException {
+		int itemSize = subscription.getItemSize();
+		int timestampOffset = subscription.getTimestampOffset();
+		int count = index.getCount(msgId);
+		int row = 0;
+		while (row < count) {
+			long windowStart = index.getOffset(msgId, row);
+			int last = row;
+			while (last + 1 < count && index.getOffset(msgId, last + 1) > index.getOffset(msgId, last)
+					&& index.getOffset(msgId, last + 1) + itemSize - windowStart <= INDEXED_READ_WINDOW) {
+				last++;
+			}
+			int windowSize = (int) (index.getOffset(msgId, last) + itemSize - windowStart);
+			ByteBuffer window = input.read(windowStart, windowSize);
+			int base = window.position();
+			for (; row <= last; row++) {
+				int start = base + (int) (index.getOffset(msgId, row) - windowStart);
+				window.limit(start + itemSize);
+				window.position(start);
+				long timestamp = timestampOffset + 8 <= itemSize ? window.getLong(start + timestampOffset) : 0;
+				visitor.onData(msgId, window, timestamp);
+			}
+		}
+	}
+
+	public ULogInput getInput() {
+		return this.input;
+	}
+
+	public boolean isDebug() {
+		return this.debug;
+	}
+
+	public void setDebug(boolean debug) {
+		this.debug = debug;
+	}
+
+	public int getFileVersion() {
+		return this.fileVersion;
+	}
+
+	public long getStartTimestamp() {
+		return this.startTimestamp;
+	}
+
+	public long getLastTimestamp() {
+		return this.lastTimestamp;
+	}
+
+	public boolean isFileCorrupt() {
+		return this.fileCorrupt;
+	}
+
+	void markFileCorrupt() {
+		this.fileCorrupt = true;
+	}
+
+	public long getHeaderEndOffset() {
+		return this.headerEndOffset;
+	}
+
+	// Offset of the first message of the data section that has not been read, because it lies past the end of the
+	// input or was only partly written
+	public long getDataEndOffset() {
+		return this.dataEndOffset;
+	}
+
+	public byte[] getCompatFlags() {
+		return this.compatFlags;
+	}
+
+	public byte[] getInCompatFlags() {
+		return this.incompatFlags;
+	}
+
+	public List<Long> getAppendedOffsets() {
+		return this.appendedOffsets;
+	}
+
+	public boolean hasDataAppended() {
+		return (this.incompatFlags[0] & 0x1) != 0;
+	}
+
+	public Map<String, MessageFormat> getMessageFormats() {
+		return this.messageFormats;
+	}
+
+	public Map<Integer, MessageAddLogged> getSubscriptions() {
+		return this.subscriptions;
+	}
+
+	public Set<Integer> getFilteredMessageIds() {
+		return this.filteredMessageIds;
+	}
+
+	public Set<String> getMissingMessageIds() {
+		return this.missingMessageIds;
+	}
+
+	public void readFileHeader() throws IOException {
+		byte[] headerData = new byte[16];
+
+		if (this.input.length() < 16) {
+			throw new IllegalArgumentException("File is too short to read the header");
+		}
+
+		this.input.read(16).get(headerData);
+
+		for (int i = 0; i < ULogUtils.HEADER_BYTES.length; i++) {
+			if (headerData[i] != ULogUtils.HEADER_BYTES[i]) {
+				throw new IllegalArgumentException("Invalid file format: header mismatch");
+			}
+		}
+
+		StringBuilder headerString = new StringBuilder("b'");
+		for (byte b : headerData) {
+			if (b >= 32 && b <= 126) {
+				headerString.append((char) b);
+			} else {
+				headerString.append(String.format("\\x%02X", b));
+			}
+		}
+		headerString.append("'");
+
+		if (this.debug) {
+			System.out.println("Header: " + headerString.toString());
+		}
+
+		this.fileVersion = headerData[7] & 0xFF;
+
+		if (this.fileVersion > 1) {
+			System.out.println("Warning: unknown file version. Attempting to continue...");
+		}
+
+		this.startTimestamp = ByteBuffer.wrap(Arrays.copyOfRange(headerData, 8, 16))
+				.order(ByteOrder.LITTLE_ENDIAN).getLong();
+
+		if (this.debug) {
+			System.out.println("Header parsed successfully:");
+			System.out.println("File Version: " + fileVersion);
+			System.out.println("Start Timestamp: " + startTimestamp);
+		}
+
+		this.visitor.onHeader(this.fileVersion, this.startTimestamp);
+	}
+
+	public void readFileDefinitions() throws IOException {
+		MessageHeader header = new MessageHeader();
+		byte[] data;
+
+		while (true) {
+			ByteBuffer view = this.input.read(3);
+			if (view.remaining() < 3) {
+				break;
+			}
+			header.initialize(view);
+			view = this.input.read(header.getMsgSize());
+			if (view.remaining() == 0 && header.getMsgSize() > 0) {
+				break;
+			}
+			data = new byte[header.getMsgSize()];
+			view.get(data, 0, view.remaining());
+
+			try {
+				if ((int) header.getMsgType() == ULogUtils.MSG_TYPE_INFO) {
+					MessageInfo msgInfo = new MessageInfo(data, false);
+					this.visitor.onInfo(msgInfo);
+				} else if ((int) header.getMsgType() == ULogUtils.MSG_TYPE_INFO_MULTIPLE) {
+					MessageInfo msgInfoMultiple = new MessageInfo(data, true);
+					this.visitor.onInfoMultiple(msgInfoMultiple);
+
+				} else if ((int) header.getMsgType() == ULogUtils.MSG_TYPE_FORMAT) {
+					MessageFormat msgFormat = new MessageFormat(data);
+					this.messageFormats.put(msgFormat.getName(), msgFormat);
+					this.visitor.onFormat(msgFormat);
+				} else if ((int) header.getMsgType() == ULogUtils.MSG_TYPE_PARAMETER) {
+					MessageInfo msgParam = new MessageInfo(data, false);
+					this.visitor.onParameter(msgParam);
+				} else if ((int) header.getMsgType() == ULogUtils.MSG_TYPE_PARAMETER_DEFAULT) {
+					MessageParameterDefault msgParamDefault = new MessageParameterDefault(data);
+					this.visitor.onParameterDefault(msgParamDefault);
+				} else if ((int) header.getMsgType() == ULogUtils.MSG_TYPE_ADD_LOGGED_MSG
+						|| header.getMsgType() == ULogUtils.MSG_TYPE_LOGGING
+						|| header.getMsgType() == ULogUtils.MSG_TYPE_LOGGING_TAGGED) {
+					this.input.seek(this.input.position() - (3 + header.getMsgSize()));
+					break;
+				} else if ((int) header.getMsgType() == ULogUtils.MSG_TYPE_FLAG_BITS) {
+					if (this.input.position() != 16 + 3 + header.getMsgSize()) {
+						System.out.println("Error: FLAGS_BITS message must be the first message.");
+						System.out.println("Offset: " + this.input.position());
+					}
+					MessageFlagBits msgFlagBits = new MessageFlagBits(data, header);
+					this.compatFlags = msgFlagBits.getCompatFlags();
+					this.incompatFlags = msgFlagBits.getInCompatFlags();
+					this.appendedOffsets = msgFlagBits.getAppendedOffsets();
+
+					if (this.debug) {
+						System.out.println("Compat Flags:");
+						for (byte x : this.compatFlags) {
+							System.out.println(x);
+						}
+						System.out.println("InCompat Flags:");
+						for (byte x : this.incompatFlags) {
+							System.out.println(x);
+						}
+						System.out.println("Appended Offsets:");
+						for (long x : this.appendedOffsets) {
+							System.out.println(x);
+						}
+					}
+
+					this.visitor.onFlagBits(msgFlagBits);
+
+					if ((this.incompatFlags[0] & ~1) != 0) {
+						throw new IllegalArgumentException("Unknown incompatible flag set: cannot parse the log");
+					}
+					for (int i = 1; i < 8; i++) {
+						if (this.incompatFlags[i] != 0) {
+							throw new UnsupportedOperationException(
+									"Unknown incompatible flag set: cannot parse the log");
+						}
+					}
+				} else {
+					if (this.debug) {
+						System.out.println("Unknown message type: " + header.getMsgType());
+						long filePosition = this.input.position();
+						System.out.println(
+								"File position: " + filePosition + " (0x" + Long.toHexString(filePosition) + ")");
+						System.out.println("Message size: " + header.getMsgSize());
+					}
+					if (checkPacketCorruption(header)) {
+						this.input.seek(-2 - header.getMsgSize());
+					}
+				}
+			} catch (IndexOutOfBoundsException e) {
+				if (!this.fileCorrupt) {
+					System.out.println("File corruption detected while reading file definitions!");
+					this.fileCorrupt = true;
+				}
+			}
+		}
+
+	}
+
+	// Reads the data section up to readUntil or the end of the input. It can be called again later to continue
+	// with data that was appended to the input in the meantime.
+	public void readFileData(Long readUntil) {
+		if (readUntil == null) {
+			readUntil = 1L << 50;
+		}
+
+		try {
+			MessageHeader header = new MessageHeader();
+			MessageData msgData = new MessageData();
+			long currFilePos = this.input.position();
+			long inputLength = this.input.length();
+
+			while (!this.stopped) {
+				long messageStart = this.input.position();
+				ByteBuffer view = this.input.read(3);
+				int bytesRead = view.remaining();
+				if (bytesRead < 3) {
+					rewindPartialMessage(messageStart);
+					break;
+				}
+
+				currFilePos += bytesRead;
+				header.initialize(view);
+
+				if (this.metadataOnly && header.getMsgType() == ULogUtils.MSG_TYPE_DATA) {
+					long payloadEnd = this.input.position() + header.getMsgSize();
+					currFilePos += header.getMsgSize();
+					if (payloadEnd > inputLength) {
+						rewindPartialMessage(messageStart);
+						break;
+					}
+					if (currFilePos > readUntil) {
+						break;
+					}
+					scanDataMessage(header, msgData);
+					this.input.seek(payloadEnd);
+					continue;
+				}
+
+				view = this.input.read(header.getMsgSize());
+				bytesRead = view.remaining();
+
+				currFilePos += bytesRead;
+
+				if (bytesRead < header.getMsgSize()) {
+					rewindPartialMessage(messageStart);
+					break;
+				}
+				if (currFilePos > readUntil) {
+					if (this.debug) {
+						System.out.printf("Read until offset=%d done, current pos=%d%n", readUntil, currFilePos);
+					}
+					break;
+				}
+
+				currFilePos = handleMessage(header, view, msgData, currFilePos);
+			}
+			this.dataEndOffset = this.input.position();
+		} catch (IOException e) {
+			System.err.println("Error reading file: " + e.getMessage());
+		}
+	}
+
+	// A message cut off at the end of the input is left unread, so a later readFileData call continues with it
+	// once the rest has been written (see ULogTail).
+	private void rewindPartialMessage(long messageStart) throws IOException {
+		if (this.input.isSeekable()) {
+			this.input.seek(messageStart);
+		}
+	}
+
+	// Metadata-only handling of a D message: only the msg_id and timestamp are read, the sizes are checked
+	// against the header and the message is counted for its topic.
+	private void scanDataMessage(MessageHeader header, MessageData msgData) {
+		try {
+			long payloadStart = this.input.position();
+			ByteBuffer view = this.input.read(Math.min(header.getMsgSize(), 10));
+			MessageAddLogged subscription = view.remaining() >= 2
+					? this.subscriptions.get(Short.toUnsignedInt(view.getShort(view.position())))
+					: null;
+			if (subscription != null && subscription.getTimestampOffset() + 10 > view.remaining()) {
+				this.input.seek(payloadStart);
+				view = this.input.read(Math.min(header.getMsgSize(), subscription.getTimestampOffset() + 10));
+			}
+
+			boolean hasCorruption = msgData.initialize(view, header, this.subscriptions, this);
+			if (hasCorruption) {
+				this.fileCorrupt = true;
+			} else if (msgData.getTimestamp() > this.lastTimestamp) {
+				this.lastTimestamp = msgData.getTimestamp();
+			}
+			if (msgData.getSubscription() != null) {
+				ULogTopicStats stats = this.topicStats.get(msgData.getMsgId());
+				if (stats == null) {
+					stats = new ULogTopicStats(msgData.getSubscription());
+					this.topicStats.put(msgData.getMsgId(), stats);
+				}
+				stats.add(msgData.getTimestamp());
+			}
+		} catch (Exception e) {
+			if (!this.fileCorrupt) {
+				System.err.println("File corruption detected while reading file data!" + e);
+				this.fileCorrupt = true;
+			}
+		}
+	}
+
+	// Dispatches one message of the data section whose payload is the remaining part of view, and returns the
+	// file position to continue from.
+	private long handleMessage(MessageHeader header, ByteBuffer view, MessageData msgData, long currFilePos)
+			throws IOException {
+		if (this.offsetIndex != null) {
+			long messageOffset = this.input.position() - header.getMsgSize() - 3;
+			if (messageOffset >= this.nextCheckpoint) {
+				this.offsetIndex.addCheckpoint(messageOffset, this.lastTimestamp);
+				this.nextCheckpoint = messageOffset + CHECKPOINT_INTERVAL;
+			}
+			if (isIndexedMessageType(header.getMsgType())) {
+				this.offsetIndex.addMessage(messageOffset, this.lastTimestamp);
+			}
+		}
+
+		byte[] data = null;
+		if (header.getMsgType() != ULogUtils.MSG_TYPE_DATA) {
+			data = new byte[view.remaining()];
+			view.get(data);
+		}
+
+		try {
+			switch (header.getMsgType()) {
+			case ULogUtils.MSG_TYPE_INFO:
+				MessageInfo msgInfo = new MessageInfo(data, false);
+				this.visitor.onInfo(msgInfo);
+				break;
+
+			case ULogUtils.MSG_TYPE_INFO_MULTIPLE:
+				MessageInfo multipleMsgInfo = new MessageInfo(data, true);
+				this.visitor.onInfoMultiple(multipleMsgInfo);
+				break;
+
+			case ULogUtils.MSG_TYPE_PARAMETER:
+				MessageInfo paramMsgInfo = new MessageInfo(data, false);
+				this.visitor.onParameterChange(
+						new ChangedParameter(this.lastTimestamp, paramMsgInfo.getKey(), paramMsgInfo.getValue()));
+				break;
+
+			case ULogUtils.MSG_TYPE_PARAMETER_DEFAULT:
+				MessageParameterDefault paramDefault = new MessageParameterDefault(data);
+				this.visitor.onParameterDefault(paramDefault);
+				break;
+
+			case ULogUtils.MSG_TYPE_ADD_LOGGED_MSG:
+				MessageAddLogged msgAddLogged = new MessageAddLogged(data, this.messageFormats);
+				FieldProjection fieldProjection = this.projection != null
+						? this.projection.get(msgAddLogged.getMessageName())
+						: null;
+				boolean selected = this.messageNameFilterList == null
+						|| this.messageNameFilterList.contains(msgAddLogged.getMessageName());
+				if (selected && fieldProjection != null) {
+					reportUnmatchedProjection(msgAddLogged, fieldProjection);
+				}
+				if (selected && (fieldProjection == null || msgAddLogged.project(fieldProjection))) {
+					this.subscriptions.put(msgAddLogged.getMsgId(), msgAddLogged);
+					this.visitor.onSubscription(msgAddLogged);
+				} else {
+					this.filteredMessageIds.add(msgAddLogged.getMsgId());
+				}
+				break;
+
+			case ULogUtils.MSG_TYPE_LOGGING:
+				MessageLogging msgLogging = new MessageLogging(data, header);
+				this.visitor.onLogging(msgLogging);
+				break;
+
+			case ULogUtils.MSG_TYPE_LOGGING_TAGGED:
+				MessageLoggingTagged msgLogTagged = new MessageLoggingTagged(data, header);
+				this.visitor.onLoggingTagged(msgLogTagged);
+				break;
+
+			case ULogUtils.MSG_TYPE_DATA:
+				int offset = view.position();
+				boolean hasCorruption = msgData.initialize(view, header, this.subscriptions, this);
+				if (hasCorruption) {
+					this.fileCorrupt = true;
+				} else if (msgData.getTimestamp() > this.lastTimestamp) {
+					this.lastTimestamp = msgData.getTimestamp();
+				}
+				if (msgData.getSubscription() != null && this.offsetIndex != null) {
+					this.offsetIndex.add(msgData.getMsgId(), this.input.position() - header.getMsgSize() + 2,
+							msgData.getTimestamp());
+				} else if (msgData.getSubscription() != null) {
+					view.limit(offset + 2 + msgData.getSubscription().getItemSize());
+					view.position(offset + 2);
+					this.visitor.onData(msgData.getMsgId(), view, msgData.getTimestamp());
+				}
+				break;
+
+			case ULogUtils.MSG_TYPE_DROPOUT:
+				MessageDropout msgDropout = new MessageDropout(data, header, this.lastTimestamp);
+				this.visitor.onDropout(msgDropout);
+				break;
+
+			case ULogUtils.MSG_TYPE_SYNC:
+				break;
+
+			default:
+				if (this.debug) {
+					System.out.printf("Unknown message type: %d%n", header.getMsgType());
+					System.out.printf("File position: %d msg size: %d%n", currFilePos, header.getMsgSize());
+				}
+
+				currFilePos = skipUnknownMessage(header, currFilePos);
+				break;
+			}
+
+		} catch (Exception e) {
+			if (!this.fileCorrupt) {
+				System.err.println("File corruption detected while reading file data!" + e);
+				this.fileCorrupt = true;
+			}
+		}
+		return currFilePos;
+	}
+
+	private static boolean isIndexedMessageType(int msgType) {
+		switch (msgType) {
+		case ULogUtils.MSG_TYPE_INFO:
+		case ULogUtils.MSG_TYPE_INFO_MULTIPLE:
+		case ULogUtils.MSG_TYPE_PARAMETER:
+		case ULogUtils.MSG_TYPE_PARAMETER_DEFAULT:
+		case ULogUtils.MSG_TYPE_ADD_LOGGED_MSG:
+		case ULogUtils.MSG_TYPE_LOGGING:
+		case ULogUtils.MSG_TYPE_LOGGING_TAGGED:
+		case ULogUtils.MSG_TYPE_DROPOUT:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	long skipUnknownMessage(MessageHeader header, long currFilePos) throws IOException {
+		if (this.checkPacketCorruption(header)) {
+			long newPos = currFilePos - 2 - header.getMsgSize();
+			this.input.seek(newPos);
+			currFilePos = this.input.position();
+			if (this.hasSync) {
+				this.findSync(-1);
+			}
+		} else {
+			if (this.hasSync) {
+				this.findSync(header.getMsgSize());
+			}
+		}
+		return currFilePos;
+	}
+
+	// Searches for the next sync sequence followed by a valid message header, from the current position to the
+	// end of the input, or only in the last lastNBytes bytes before it. When one is found the input is positioned
+	// after it and the skipped range is added to the recovery report.
+	public boolean findSync(long lastNBytes) throws IOException {
+		long initialFilePosition = this.input.position();
+		long searchStart = initialFilePosition;
+
+		if (lastNBytes != -1) {
+			searchStart = Math.max(0, initialFilePosition - lastNBytes);
+			this.input.seek(searchStart);
+		}
+
+		long syncEnd = ULogResync.find(this.input, lastNBytes == -1 ? -1 : initialFilePosition - searchStart);
+		if (syncEnd >= 0) {
+			long syncStart = syncEnd - ULogUtils.SYNC_BYTES.length;
+			if (this.debug) {
+				System.out.printf("Found sync at %d%n", syncStart);
+			}
+			this.recoveryReport.add(searchStart, syncStart, syncEnd);
+			this.fileCorrupt = true;
+			return true;
+		}
+
+		if (lastNBytes == -1) {
+			this.recoveryReport.add(initialFilePosition, this.input.position(), -1);
+		}
+		// a forward-only input cannot go back after searching to the end, so parsing ends there
+		if (this.input.isSeekable() || lastNBytes != -1) {
+			this.input.seek(initialFilePosition);
+		} else {
+			System.err.printf("No sync found after %d on a forward-only input, ignoring the rest%n",
+					initialFilePosition);
+		}
+		if (lastNBytes == -1) {
+			this.hasSync = false;
+			if (this.debug) {
+				System.out.printf("Failed to find sync in file from %d%n", initialFilePosition);
+			}
+		} else {
+			if (this.debug) {
+				System.out.printf("Failed to find sync in (%d, %d)%n", initialFilePosition - lastNBytes,
+						initialFilePosition);
+			}
+		}
+
+		return false;
+	}
+
+	public ULogRecoveryReport getRecoveryReport() {
+		return this.recoveryReport;
+	}
+
+	private boolean checkPacketCorruption(MessageHeader header) {
+		boolean dataCorrupt = false;
+
+		if (header.getMsgType() == 0 || header.getMsgSize() == 0 || header.getMsgSize() > 10000) {
+			if (!this.fileCorrupt && this.debug) {
+				System.out.println("File corruption detected");
+			}
+			dataCorrupt = true;
+			this.fileCorrupt = true;
+		}
+
+		return dataCorrupt;
+	}
+}
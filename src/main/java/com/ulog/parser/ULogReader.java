@@ -1,10 +1,9 @@
 package com.ulog.parser;
 
 import java.io.BufferedOutputStream;
-import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
@@ -17,34 +16,46 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
-public class ULogReader {
+public class ULogReader implements ULogVisitor {
 
 	public static void main(String[] args) {
 	    if (args.length < 2) {
 	        System.out.println("ULog to CSV Converter");
-	        System.out.println("Usage: java -jar ulog-reader.jar <input_file.ulg> <output_path_prefix> [delimiter]");
+	        System.out.println("Usage: java -jar ulog-reader.jar <input_file.ulg> <output_path_prefix> [delimiter] [threads]");
 	        System.out.println("Example: java -jar ulog-reader.jar log001.ulg ./output/log_");
+	        System.out.println("Use com.ulog.parser.ULogBatch to convert whole directories of logs");
 	        return;
 	    }
 
 	    String inputPath = args[0];
 	    String outputPath = args[1];
 	    String delimiter = (args.length > 2) ? args[2] : ",";
+	    int threads = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
 
 	    System.out.println("Loading file: " + inputPath);
 	    ULogReader parser = new ULogReader(inputPath, null, true, false);
 	    
 	    System.out.println("Exporting CSVs to: " + outputPath + "...");
-	    parser.ulog2csv(parser.getDataList(), outputPath, 0, Long.MAX_VALUE, delimiter);
+	    parser.ulog2csv(parser.getDataList(), outputPath, 0, Long.MAX_VALUE, delimiter, threads);
 	    System.out.println("Done.");
 	}
 	private RandomAccessFile fileHandle;
+	private ULogInput input;
+	private ULogParser parser;
+	private String logFile;
+	private ULogIndexFile indexFile;
+	private Map<String, List<String>> projection;
 	private int fileVersion;
 	private long startTimestamp;
 	private boolean debug = true;
@@ -63,29 +74,30 @@ public class ULogReader {
 	private List<MessageDropout> dropouts = new ArrayList<>();
 	private List<Data> dataList = new ArrayList<>();
 	private Map<Integer, MessageAddLogged> subscriptions = new HashMap<>();
-	private Set<Integer> filteredMessageIds = new HashSet<>();
-	private Set<String> missingMessageIds = new HashSet<>();
+	private Map<Integer, Data> refreshedData = Collections.emptyMap();
 	private byte[] compatFlags = new byte[8];
 	private byte[] incompatFlags = new byte[8];
 	private List<Long> appendedOffsets = new ArrayList<>();
-	private boolean hasSync = true;
-	private long headerEndOffset = 0L;
 	double time = 0;
 
 	public ULogReader(String logFile, List<String> messageNameFilterList, boolean disableStrExceptions,
 			boolean parseHeaderOnly) {
+		this(logFile, new ULogReaderOptions().setMessageNameFilterList(messageNameFilterList)
+				.setDisableStrExceptions(disableStrExceptions).setParseHeaderOnly(parseHeaderOnly));
+	}
+
+	public ULogReader(String logFile, ULogReaderOptions options) {
 
 		this.debug = false;
 		this.fileCorrupt = false;
 		this.startTimestamp = 0;
 		this.lastTimestamp = 0;
 		this.fileVersion = 0;
-		this.hasSync = true;
-		ULogUtils.disableStrExceptions = disableStrExceptions;
+		ULogUtils.disableStrExceptions = options.isDisableStrExceptions();
 
 		if (logFile != null) {
 			try {
-				loadFile(logFile, messageNameFilterList, parseHeaderOnly);
+				loadFile(logFile, options);
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
@@ -93,6 +105,25 @@ public class ULogReader {
 
 	}
 
+	// Reads a log from any input, e.g. a ULogBufferInput over bytes in memory or a ULogStreamInput over an
+	// upload stream. The input is closed when loading is done. Sidecar indexes and readWindow need a file, and
+	// indexed decoding falls back to a single pass on forward-only inputs.
+	public ULogReader(ULogInput input, ULogReaderOptions options) {
+
+		this.debug = false;
+		this.fileCorrupt = false;
+		this.startTimestamp = 0;
+		this.lastTimestamp = 0;
+		this.fileVersion = 0;
+		ULogUtils.disableStrExceptions = options.isDisableStrExceptions();
+
+		try {
+			load(input, options);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
 	public long getStartTimestamp() {
 		return this.startTimestamp;
 	}
@@ -166,17 +197,22 @@ public class ULogReader {
 	}
 
 	public Set<Integer> getFilteredMessageIds() {
-		return this.filteredMessageIds;
+		return this.parser != null ? this.parser.getFilteredMessageIds() : Collections.emptySet();
 	}
 
 	public Set<String> getMissingMessageIds() {
-		return this.missingMessageIds;
+		return this.parser != null ? this.parser.getMissingMessageIds() : Collections.emptySet();
 	}
 
+	// null when the reader was created from a ULogInput
 	public RandomAccessFile getFileHandle() {
 		return this.fileHandle;
 	}
 
+	public ULogInput getInput() {
+		return this.input;
+	}
+
 	public boolean isDebug() {
 		return this.debug;
 	}
@@ -398,60 +434,80 @@ public class ULogReader {
 
 			for (int iSample = 0; iSample < dataSetLength; iSample++) {
 				long timestamp = (long) dataSet.getData().get("timestamp").get(iSample);
-				ByteBuffer dataBuffer = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
-				dataBuffer.putShort((short) dataSet.getMsgId());
-
-				for (FieldData field : dataSet.getFieldData()) {
-					String fieldName = field.getFieldName();
-					String fieldType = field.getTypeStr();
-					Object[] unpackDetails = ULogUtils.UNPACK_TYPES.get(fieldType);
-					char fieldEncoding = (char) unpackDetails[0];
-					Object fieldData = dataSet.getData().get(fieldName).get(iSample);
-
-					if (fieldEncoding == 'c') {
-						fieldData = String.valueOf((char) ((int) fieldData)).getBytes();
-						dataBuffer.put((byte[]) fieldData);
-					} else if (fieldEncoding == 'i') {
-						dataBuffer.putInt((int) fieldData);
-					} else if (fieldEncoding == 'f') {
-						dataBuffer.putFloat((float) fieldData);
-					} else {
-						throw new IllegalArgumentException("Unsupported field encoding: " + fieldEncoding);
-					}
-				}
-
-				int dataLength = dataBuffer.position();
-				ByteBuffer headerBuffer = ByteBuffer.allocate(3).order(ByteOrder.LITTLE_ENDIAN);
-				headerBuffer.putShort((short) dataLength);
-				headerBuffer.put((byte) ULogUtils.MSG_TYPE_DATA);
-
-				byte[] header = headerBuffer.array();
-				byte[] data = new byte[dataLength];
-				dataBuffer.flip();
-				dataBuffer.get(data);
+				messageItems.add(new MessageItem(timestamp, makeDataMessage(dataSet, iSample)));
+			}
+		}
 
-				ByteBuffer combinedBuffer = ByteBuffer.allocate(header.length + data.length);
-				combinedBuffer.put(header);
-				combinedBuffer.put(data);
+		return messageItems;
+	}
 
-				messageItems.add(new MessageItem(timestamp, combinedBuffer.array()));
+	private byte[] makeDataMessage(Data dataSet, int iSample) {
+		ByteBuffer dataBuffer = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+		dataBuffer.putShort((short) dataSet.getMsgId());
+
+		for (FieldData field : dataSet.getFieldData()) {
+			String fieldName = field.getFieldName();
+			String fieldType = field.getTypeStr();
+			Object[] unpackDetails = ULogUtils.UNPACK_TYPES.get(fieldType);
+			char fieldEncoding = (char) unpackDetails[0];
+			Object fieldData = dataSet.getData().get(fieldName).get(iSample);
+
+			if (fieldEncoding == 'c') {
+				fieldData = String.valueOf((char) ((int) fieldData)).getBytes();
+				dataBuffer.put((byte[]) fieldData);
+			} else if (fieldEncoding == 'i') {
+				dataBuffer.putInt((int) fieldData);
+			} else if (fieldEncoding == 'f') {
+				dataBuffer.putFloat((float) fieldData);
+			} else {
+				throw new IllegalArgumentException("Unsupported field encoding: " + fieldEncoding);
 			}
 		}
 
-		return messageItems;
+		int dataLength = dataBuffer.position();
+		ByteBuffer headerBuffer = ByteBuffer.allocate(3).order(ByteOrder.LITTLE_ENDIAN);
+		headerBuffer.putShort((short) dataLength);
+		headerBuffer.put((byte) ULogUtils.MSG_TYPE_DATA);
+
+		byte[] header = headerBuffer.array();
+		byte[] data = new byte[dataLength];
+		dataBuffer.flip();
+		dataBuffer.get(data);
+
+		ByteBuffer combinedBuffer = ByteBuffer.allocate(header.length + data.length);
+		combinedBuffer.put(header);
+		combinedBuffer.put(data);
+		return combinedBuffer.array();
 	}
 
+	// Messages are written in timestamp order by merging the topics and message lists, instead of building every
+	// message up front and sorting them all. The order is the same as that of a stable sort; topics without a
+	// timestamp field are left out with a warning (see ULogMergeCursor).
 	public void writeDataSection(OutputStream file) throws IOException {
-		List<MessageItem> items = new ArrayList<>();
-		items.addAll(this.makeDataItems());
-		items.addAll(this.makeLoggedMessageItems());
-		items.addAll(this.makeTaggedLoggedMessageItems());
-		items.addAll(this.makeDropoutItems());
-		items.addAll(this.makeChangedParamItems());
-		items.sort(Comparator.comparingLong(MessageItem::getTimestamp));
-
-		for (MessageItem item : items) {
-			file.write(item.getData());
+		Collections.sort(this.dataList, Comparator.comparingInt(Data::getMsgId));
+		ULogMergeCursor cursor = ULogMergeCursor.of(this, this.dataList);
+		while (cursor.next()) {
+			byte[] message;
+			switch (cursor.getMsgType()) {
+			case ULogUtils.MSG_TYPE_DATA:
+				message = makeDataMessage(cursor.getData(), cursor.getRow());
+				break;
+			case ULogUtils.MSG_TYPE_LOGGING:
+				message = makeLoggedMessage(cursor.getLogging());
+				break;
+			case ULogUtils.MSG_TYPE_LOGGING_TAGGED:
+				message = makeTaggedLoggedMessage(cursor.getLoggingTagged());
+				break;
+			case ULogUtils.MSG_TYPE_DROPOUT:
+				message = makeDropoutMessage(cursor.getDropout());
+				break;
+			default:
+				message = makeChangedParamMessage(cursor.getParameterChange());
+				break;
+			}
+			if (message != null) {
+				file.write(message);
+			}
 		}
 	}
 
@@ -526,82 +582,98 @@ public class ULogReader {
 		List<MessageItem> messageItems = new ArrayList<>();
 
 		for (MessageLogging message : this.loggedMessages) {
-			ByteArrayOutputStream data = new ByteArrayOutputStream();
-			try {
-				data.write(ByteBuffer.allocate(8).put((byte) message.getLogLevel()).putLong(message.getTimestamp())
-						.array());
-				data.write(message.getMessage().getBytes(StandardCharsets.UTF_8));
-
-				ByteBuffer headerBuffer = ByteBuffer.allocate(3);
-				headerBuffer.putShort((short) data.size()).put((byte) ULogUtils.MSG_TYPE_LOGGING);
-				byte[] header = headerBuffer.array();
-				byte[] combinedData = this.concatenateByteArrays(header, data.toByteArray());
+			byte[] combinedData = makeLoggedMessage(message);
+			if (combinedData != null) {
 				messageItems.add(new MessageItem(message.getTimestamp(), combinedData));
-			} catch (IOException e) {
-				e.printStackTrace();
 			}
 		}
 
 		return messageItems;
 	}
 
+	private byte[] makeLoggedMessage(MessageLogging message) {
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		try {
+			data.write(ByteBuffer.allocate(8).put((byte) message.getLogLevel()).putLong(message.getTimestamp())
+					.array());
+			data.write(message.getMessage().getBytes(StandardCharsets.UTF_8));
+
+			ByteBuffer headerBuffer = ByteBuffer.allocate(3);
+			headerBuffer.putShort((short) data.size()).put((byte) ULogUtils.MSG_TYPE_LOGGING);
+			byte[] header = headerBuffer.array();
+			return this.concatenateByteArrays(header, data.toByteArray());
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
 	public List<MessageItem> makeTaggedLoggedMessageItems() {
 		List<MessageItem> messageItems = new ArrayList<>();
 
 		for (List<MessageLoggingTagged> messageList : this.loggedMessagesTagged.values()) {
 			for (MessageLoggingTagged message : messageList) {
-				ByteBuffer data = ByteBuffer.allocate(1024);
-				data.put((byte) message.getLogLevel());
-				data.putLong(message.getTag());
-				data.putLong(message.getTimestamp());
-				data.put(message.getMessage().getBytes());
-
-				byte[] header = new byte[3];
-				ByteBuffer headerBuffer = ByteBuffer.wrap(header);
-				headerBuffer.putShort((short) data.position());
-				headerBuffer.put((byte) ULogUtils.MSG_TYPE_LOGGING_TAGGED);
-
-				byte[] fullData = this.concatenateByteArrays(header, data.array());
-				messageItems.add(new MessageItem(message.getTimestamp(), fullData));
+				messageItems.add(new MessageItem(message.getTimestamp(), makeTaggedLoggedMessage(message)));
 			}
 		}
 		return messageItems;
 	}
 
+	private byte[] makeTaggedLoggedMessage(MessageLoggingTagged message) {
+		ByteBuffer data = ByteBuffer.allocate(1024);
+		data.put((byte) message.getLogLevel());
+		data.putLong(message.getTag());
+		data.putLong(message.getTimestamp());
+		data.put(message.getMessage().getBytes());
+
+		byte[] header = new byte[3];
+		ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+		headerBuffer.putShort((short) data.position());
+		headerBuffer.put((byte) ULogUtils.MSG_TYPE_LOGGING_TAGGED);
+
+		return this.concatenateByteArrays(header, data.array());
+	}
+
 	public List<MessageItem> makeDropoutItems() {
 		List<MessageItem> dropoutItems = new ArrayList<>();
 		for (MessageDropout dropout : this.dropouts) {
-			ByteBuffer data = ByteBuffer.allocate(1024);
-			data.putShort((short) dropout.getDuration());
-			byte[] header = new byte[3];
-			ByteBuffer headerBuffer = ByteBuffer.wrap(header);
-			headerBuffer.putShort((short) data.position());
-			headerBuffer.put((byte) ULogUtils.MSG_TYPE_DROPOUT);
-
-			byte[] fullData = this.concatenateByteArrays(header, data.array());
-			dropoutItems.add(new MessageItem(dropout.getTimestamp(), fullData));
+			dropoutItems.add(new MessageItem(dropout.getTimestamp(), makeDropoutMessage(dropout)));
 		}
 
 		return dropoutItems;
 	}
 
+	private byte[] makeDropoutMessage(MessageDropout dropout) {
+		ByteBuffer data = ByteBuffer.allocate(1024);
+		data.putShort((short) dropout.getDuration());
+		byte[] header = new byte[3];
+		ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+		headerBuffer.putShort((short) data.position());
+		headerBuffer.put((byte) ULogUtils.MSG_TYPE_DROPOUT);
+
+		return this.concatenateByteArrays(header, data.array());
+	}
+
 	public List<MessageItem> makeChangedParamItems() {
 		List<MessageItem> changedParamItems = new ArrayList<>();
 
 		for (ChangedParameter param : this.changedParameters) {
-			byte[] data = this.makeParameterData(param.getName(), param.getValue());
-
-			ByteBuffer headerBuffer = ByteBuffer.allocate(3);
-			headerBuffer.putShort((short) data.length);
-			headerBuffer.put((byte) ULogUtils.MSG_TYPE_PARAMETER);
-
-			byte[] fullData = this.concatenateByteArrays(headerBuffer.array(), data);
-			changedParamItems.add(new MessageItem(param.getTimestamp(), fullData));
+			changedParamItems.add(new MessageItem(param.getTimestamp(), makeChangedParamMessage(param)));
 		}
 
 		return changedParamItems;
 	}
 
+	private byte[] makeChangedParamMessage(ChangedParameter param) {
+		byte[] data = this.makeParameterData(param.getName(), param.getValue());
+
+		ByteBuffer headerBuffer = ByteBuffer.allocate(3);
+		headerBuffer.putShort((short) data.length);
+		headerBuffer.put((byte) ULogUtils.MSG_TYPE_PARAMETER);
+
+		return this.concatenateByteArrays(headerBuffer.array(), data);
+	}
+
 	private byte[] concatenateByteArrays(byte[] array1, byte[] array2) {
 		byte[] result = new byte[array1.length + array2.length];
 		System.arraycopy(array1, 0, result, 0, array1.length);
@@ -634,322 +706,364 @@ public class ULogReader {
 		return true;
 	}
 
-	private void loadFile(String logFile, List<String> messageNameFilterList, boolean parseHeaderOnly)
-			throws IOException {
-
-		this.fileHandle = new RandomAccessFile(logFile, "r");
-		readFileHeader();
-		this.lastTimestamp = this.startTimestamp;
-		readFileDefinitions();
+	private void loadFile(String logFile, ULogReaderOptions options) throws IOException {
 
-		this.headerEndOffset = this.fileHandle.getFilePointer();
-		if (this.debug) {
-			System.out.println("Header end offset: " + this.headerEndOffset);
+		// compressed logs are parsed as a stream, so the file-only features (sidecar, readWindow) are not available
+		if (ULogInflatingChannel.isGzip(logFile)) {
+			load(ULogInflatingChannel.open(logFile), options);
+			return;
 		}
 
-		if (parseHeaderOnly) {
-			this.fileHandle.close();
-			return;
+		this.logFile = logFile;
+		this.fileHandle = new RandomAccessFile(logFile, "r");
+		load(ULogParser.openInput(this.fileHandle, options.isMemoryMapped()), options);
+	}
+
+	private void load(ULogInput input, ULogReaderOptions options) throws IOException {
+
+		this.input = input;
+		this.parser = new ULogParser(this.input, this, options.getMessageNameFilterList());
+		this.parser.setDebug(this.debug);
+		this.parser.setProjection(options.getProjection());
+		this.parser.setMetadataOnly(options.isMetadataOnly());
+		this.projection = options.getProjection();
+
+		// A projection leaves out topics none of whose fields it selects, so projected parses neither write nor
+		// read a sidecar
+		boolean useSidecar = options.isSidecarIndex() && this.logFile != null && !options.isParseHeaderOnly()
+				&& !options.isMetadataOnly() && options.getProjection() == null;
+		File indexFile = useSidecar ? ULogIndexFile.sidecarFor(this.logFile) : null;
+		if (useSidecar) {
+			this.indexFile = ULogIndexFile.read(indexFile, new File(this.logFile));
 		}
 
-		if (this.hasDataAppended() && this.appendedOffsets != null && this.appendedOffsets.size() > 0) {
-			if (this.debug) {
-				System.out.println("This file has data appended");
+		if (this.indexFile != null) {
+			this.parser.parse(this.indexFile);
+		} else {
+			// A sidecar is only written from a full parse without a name filter or projection, so it can serve any
+			// later filter
+			boolean writeIndex = useSidecar && options.getMessageNameFilterList() == null
+					&& options.getProjection() == null;
+			if ((options.isIndexedDecode() && input.isSeekable()) || writeIndex) {
+				this.parser.setIndexedDecode(options.getDecodeExecutor() != null ? options.getDecodeExecutor()
+						: ForkJoinPool.commonPool());
 			}
-			for (Long offset : appendedOffsets) {
-				readFileData(messageNameFilterList, offset);
-				this.fileHandle.seek(offset);
+			this.parser.parse(options.isParseHeaderOnly());
+
+			if (writeIndex) {
+				try {
+					new ULogIndexFile(new File(this.logFile), this.parser).write(indexFile);
+				} catch (IOException e) {
+					System.err.println("Could not write index file " + indexFile + ": " + e.getMessage());
+				}
 			}
 		}
 
-		readFileData(messageNameFilterList, null);
+		this.input.close();
 
-		this.fileHandle.close();
+		if (options.getDecodeExecutor() != null) {
+			materializeData(options.getDecodeExecutor(), options.getDecodeTaskRows());
+		}
+	}
+
+	// Decodes all columns up front on the given executor. Every topic is split into row range tasks and its
+	// columns are only published once all of its ranges are done, so dataList is the same whatever order the
+	// tasks run in.
+	private void materializeData(Executor executor, int taskRows) throws IOException {
+		List<CompletableFuture<Void>> pending = new ArrayList<>();
+		for (Data data : this.dataList) {
+			Column[] columns = data.createColumns();
+			List<CompletableFuture<Void>> ranges = new ArrayList<>();
+			for (Runnable task : data.createDecodeTasks(columns, taskRows)) {
+				ranges.add(CompletableFuture.runAsync(task, executor));
+			}
+			pending.add(CompletableFuture.allOf(ranges.toArray(new CompletableFuture<?>[0]))
+					.thenRun(() -> data.setColumns(columns)));
+		}
+		try {
+			CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+		} catch (CompletionException e) {
+			throw new IOException("Decoding data failed", e.getCause());
+		}
 	}
 
 	public void readFileHeader() throws IOException {
-		byte[] headerData = new byte[16];
+		this.parser.readFileHeader();
+	}
 
-		if (this.fileHandle.length() < 16) {
-			throw new IllegalArgumentException("File is too short to read the header");
-		}
+	public ULogParser getParser() {
+		return this.parser;
+	}
 
-		this.fileHandle.readFully(headerData);
+	@Override
+	public void onHeader(int fileVersion, long startTimestamp) {
+		this.fileVersion = fileVersion;
+		this.startTimestamp = startTimestamp;
+		this.lastTimestamp = startTimestamp;
+	}
 
-		for (int i = 0; i < ULogUtils.HEADER_BYTES.length; i++) {
-			if (headerData[i] != ULogUtils.HEADER_BYTES[i]) {
-				throw new IllegalArgumentException("Invalid file format: header mismatch");
-			}
-		}
+	@Override
+	public void onFlagBits(MessageFlagBits flagBits) {
+		this.compatFlags = flagBits.getCompatFlags();
+		this.incompatFlags = flagBits.getInCompatFlags();
+		this.appendedOffsets = flagBits.getAppendedOffsets();
+	}
 
-		StringBuilder headerString = new StringBuilder("b'");
-		for (byte b : headerData) {
-			if (b >= 32 && b <= 126) {
-				headerString.append((char) b);
-			} else {
-				headerString.append(String.format("\\x%02X", b));
-			}
-		}
-		headerString.append("'");
+	@Override
+	public void onInfo(MessageInfo info) {
+		this.msgInfoDict.put(info.getKey(), info.getValue());
+		this.msgInfoDictTypes.put(info.getKey(), info.getType());
+	}
 
-		if (this.debug) {
-			System.out.println("Header: " + headerString.toString());
-		}
+	@Override
+	public void onInfoMultiple(MessageInfo info) {
+		addMessageInfoMultiple(info);
+	}
+
+	@Override
+	public void onFormat(MessageFormat format) {
+		this.messageFormats.put(format.getName(), format);
+	}
 
-		this.fileVersion = headerData[7] & 0xFF;
+	@Override
+	public void onParameter(MessageInfo parameter) {
+		this.initialParameters.put(parameter.getKey(), parameter.getValue());
+	}
 
-		if (this.fileVersion > 1) {
-			System.out.println("Warning: unknown file version. Attempting to continue...");
-		}
+	@Override
+	public void onParameterDefault(MessageParameterDefault parameter) {
+		addParameterDefault(parameter);
+	}
 
-		this.startTimestamp = ByteBuffer.wrap(Arrays.copyOfRange(headerData, 8, 16)).order(ByteOrder.LITTLE_ENDIAN)
-				.getLong();
+	@Override
+	public void onSubscription(MessageAddLogged subscription) {
+		this.subscriptions.put(subscription.getMsgId(), subscription);
+	}
 
-		if (this.debug) {
-			System.out.println("Header parsed successfully:");
-			System.out.println("File Version: " + fileVersion);
-			System.out.println("Start Timestamp: " + startTimestamp);
+	@Override
+	public void onData(int msgId, ByteBuffer row, long timestamp) {
+		MessageAddLogged subscription = this.subscriptions.get(msgId);
+		if (subscription != null) {
+			subscription.appendRow(row);
+		} else {
+			// a topic that already has its Data, during refresh()
+			this.parser.getSubscriptions().get(msgId).appendRow(this.refreshedData.get(msgId).getRows(), row);
 		}
 	}
 
-	private void readFileDefinitions() throws IOException {
-		MessageHeader header = new MessageHeader();
-		byte[] data;
+	@Override
+	public void onLogging(MessageLogging message) {
+		this.loggedMessages.add(message);
+	}
 
-		while (true) {
-			data = new byte[3];
-			int bytesRead = this.fileHandle.read(data);
-			if (bytesRead == -1) {
-				break;
-			}
-			header.initialize(data);
-			data = new byte[header.getMsgSize()];
-			bytesRead = this.fileHandle.read(data);
-			if (bytesRead == -1) {
-				break;
-			}
+	@Override
+	public void onLoggingTagged(MessageLoggingTagged message) {
+		this.loggedMessagesTagged.computeIfAbsent(String.valueOf(message.getTag()), k -> new ArrayList<>())
+				.add(message);
+	}
 
-			try {
-				if ((int) header.getMsgType() == ULogUtils.MSG_TYPE_INFO) {
-					MessageInfo msgInfo = new MessageInfo(data, false);
-					this.msgInfoDict.put(msgInfo.getKey(), msgInfo.getValue());
-					this.msgInfoDictTypes.put(msgInfo.getKey(), msgInfo.getType());
-				} else if ((int) header.getMsgType() == ULogUtils.MSG_TYPE_INFO_MULTIPLE) {
-					MessageInfo msgInfoMultiple = new MessageInfo(data, true);
-					addMessageInfoMultiple(msgInfoMultiple);
-
-				} else if ((int) header.getMsgType() == ULogUtils.MSG_TYPE_FORMAT) {
-					MessageFormat msgFormat = new MessageFormat(data);
-					this.messageFormats.put(msgFormat.getName(), msgFormat);
-				} else if ((int) header.getMsgType() == ULogUtils.MSG_TYPE_PARAMETER) {
-					MessageInfo msgParam = new MessageInfo(data, false);
-					this.initialParameters.put(msgParam.getKey(), msgParam.getValue());
-				} else if ((int) header.getMsgType() == ULogUtils.MSG_TYPE_PARAMETER_DEFAULT) {
-					MessageParameterDefault msgParamDefault = new MessageParameterDefault(data);
-					addParameterDefault(msgParamDefault);
-				} else if ((int) header.getMsgType() == ULogUtils.MSG_TYPE_ADD_LOGGED_MSG
-						|| header.getMsgType() == ULogUtils.MSG_TYPE_LOGGING
-						|| header.getMsgType() == ULogUtils.MSG_TYPE_LOGGING_TAGGED) {
-					this.fileHandle.seek(this.fileHandle.getFilePointer() - (3 + header.getMsgSize()));
-					break;
-				} else if ((int) header.getMsgType() == ULogUtils.MSG_TYPE_FLAG_BITS) {
-					if (this.fileHandle.getFilePointer() != 16 + 3 + header.getMsgSize()) {
-						System.out.println("Error: FLAGS_BITS message must be the first message.");
-						System.out.println("Offset: " + this.fileHandle.getFilePointer());
-					}
-					MessageFlagBits msgFlagBits = new MessageFlagBits(data, header);
-					this.compatFlags = msgFlagBits.getCompatFlags();
-					this.incompatFlags = msgFlagBits.getInCompatFlags();
-					this.appendedOffsets = msgFlagBits.getAppendedOffsets();
-
-					if (this.debug) {
-						System.out.println("Compat Flags:");
-						for (byte x : this.compatFlags) {
-							System.out.println(x);
-						}
-						System.out.println("InCompat Flags:");
-						for (byte x : this.incompatFlags) {
-							System.out.println(x);
-						}
-						System.out.println("Appended Offsets:");
-						for (long x : this.appendedOffsets) {
-							System.out.println(x);
-						}
-					}
+	@Override
+	public void onParameterChange(ChangedParameter parameter) {
+		this.changedParameters.add(parameter);
+	}
 
-					if ((this.incompatFlags[0] & ~1) != 0) {
-						throw new IllegalArgumentException("Unknown incompatible flag set: cannot parse the log");
-					}
-					for (int i = 1; i < 8; i++) {
-						if (this.incompatFlags[i] != 0) {
-							throw new UnsupportedOperationException(
-									"Unknown incompatible flag set: cannot parse the log");
-						}
-					}
-				} else {
-					if (this.debug) {
-						System.out.println("Unknown message type: " + header.getMsgType());
-						long filePosition = fileHandle.getFilePointer();
-						System.out.println(
-								"File position: " + filePosition + " (0x" + Long.toHexString(filePosition) + ")");
-						System.out.println("Message size: " + header.getMsgSize());
-					}
-					if (checkPacketCorruption(header)) {
-						this.fileHandle.seek(-2 - header.getMsgSize());
-					}
-				}
-			} catch (IndexOutOfBoundsException e) {
-				if (!this.fileCorrupt) {
-					System.out.println("File corruption detected while reading file definitions!");
-					this.fileCorrupt = true;
-				}
+	@Override
+	public void onDropout(MessageDropout dropout) {
+		this.dropouts.add(dropout);
+	}
+
+	@Override
+	public void onEnd() {
+		this.lastTimestamp = this.parser.getLastTimestamp();
+		this.fileCorrupt = this.parser.isFileCorrupt();
+
+		Iterator<MessageAddLogged> subscriptionIterator = this.subscriptions.values().iterator();
+		while (subscriptionIterator.hasNext()) {
+			MessageAddLogged value = subscriptionIterator.next();
+			subscriptionIterator.remove();
+			if (value.getRowBuffer().getRowCount() > 0) {
+				this.dataList.add(new Data(value));
+			} else if (this.indexFile != null && this.indexFile.getOffsetIndex().getCount(value.getMsgId()) > 0) {
+				ULogOffsetIndex offsetIndex = this.indexFile.getOffsetIndex();
+				String logFile = this.logFile;
+				this.dataList.add(new Data(value, offsetIndex.getCount(value.getMsgId()),
+						() -> readIndexedRows(logFile, offsetIndex, value)));
 			}
 		}
 
+		this.dataList.sort(Comparator.comparing(Data::getName).thenComparing(Data::getMultiId));
 	}
 
-	private void readFileData(List<String> messageNameFilterList, Long readUntil) {
-		if (readUntil == null) {
-			readUntil = 1L << 50;
+	// Reads only the rows of one topic from the log, for data opened through a sidecar index
+	private static RowBuffer readIndexedRows(String logFile, ULogOffsetIndex offsetIndex,
+			MessageAddLogged subscription) throws IOException {
+		RowBuffer rows = new RowBuffer(subscription.getRowSize());
+		try (ULogInput input = new ULogFileInput(new RandomAccessFile(logFile, "r"))) {
+			ULogParser.readIndexedRows(input, offsetIndex, subscription.getMsgId(), subscription, new ULogVisitor() {
+				@Override
+				public void onData(int msgId, ByteBuffer row, long timestamp) {
+					subscription.appendRow(rows, row);
+				}
+			});
 		}
+		return rows;
+	}
 
+	// Reads the messages that were appended to the log since it was loaded or last refreshed, starting at the
+	// first message that was not read before. New rows are appended to the existing Data, whose decoded columns
+	// grow in place, and topics that get their first rows become new Data. Logged messages, parameter changes and
+	// dropouts are added as well. Returns the number of new rows.
+	public int refresh() throws IOException {
+		if (this.logFile == null || this.parser == null) {
+			throw new IllegalStateException("refresh needs a reader that was opened from a file");
+		}
+		Map<Integer, Data> existing = new HashMap<>();
+		int rowsBefore = 0;
+		for (Data data : this.dataList) {
+			existing.put(data.getMsgId(), data);
+			rowsBefore += data.getRowCount();
+		}
+		for (MessageAddLogged subscription : this.parser.getSubscriptions().values()) {
+			if (!existing.containsKey(subscription.getMsgId())) {
+				this.subscriptions.put(subscription.getMsgId(), subscription);
+			}
+		}
+		this.refreshedData = existing;
+
+		ULogParser previous = this.parser;
+		this.input = new ULogFileInput(new RandomAccessFile(this.logFile, "r"));
 		try {
-			MessageHeader header = new MessageHeader();
-			MessageData msgData = new MessageData();
-			long currFilePos = this.fileHandle.getFilePointer();
-
-			while (true) {
-				byte[] data = new byte[3];
-				int bytesRead = this.fileHandle.read(data);
-				if (bytesRead < 3) {
-					break;
-				}
+			this.parser = new ULogParser(this.input, this);
+			this.parser.parseAppended(previous);
+		} finally {
+			this.input.close();
+			this.refreshedData = Collections.emptyMap();
+		}
 
-				currFilePos += bytesRead;
-				header.initialize(data);
+		int rowsAfter = 0;
+		for (Data data : this.dataList) {
+			data.updateRowCount();
+			rowsAfter += data.getRowCount();
+		}
+		return rowsAfter - rowsBefore;
+	}
 
-				data = new byte[header.getMsgSize()];
-				bytesRead = this.fileHandle.read(data);
+	// Reads the rows of the given topics (all topics when null) with timestamps in [t0, t1] from the log again.
+	// With an offset index, from a sidecar or an indexed parse, reading starts near t0 instead of at the
+	// beginning of the data section, and it stops as soon as every selected topic has passed t1 or, by the index,
+	// has no rows left. Without an index only topics that had a row are waited for. Opening the reader with
+	// setParseHeaderOnly(true) and a sidecar index keeps the whole call close to the window size.
+	public List<Data> readWindow(long t0, long t1, List<String> topics) throws IOException {
+		if (this.logFile == null) {
+			throw new IllegalStateException("readWindow needs a reader that was opened from a file");
+		}
+		ULogOffsetIndex offsetIndex = this.indexFile != null ? this.indexFile.getOffsetIndex()
+				: this.parser != null ? this.parser.getOffsetIndex() : null;
+		if (offsetIndex == null && this.logFile != null) {
+			ULogIndexFile sidecar = ULogIndexFile.read(ULogIndexFile.sidecarFor(this.logFile), new File(this.logFile));
+			offsetIndex = sidecar != null ? sidecar.getOffsetIndex() : null;
+		}
 
-				currFilePos += bytesRead;
+		WindowVisitor visitor = new WindowVisitor(t0, t1, offsetIndex);
+		try (ULogInput windowInput = new ULogFileInput(new RandomAccessFile(this.logFile, "r"))) {
+			visitor.parser = new ULogParser(windowInput, visitor, topics);
+			visitor.parser.setProjection(this.projection);
+			visitor.parser.parseFrom(offsetIndex, t0);
+		}
 
-				if (bytesRead < header.getMsgSize()) {
-					break;
-				}
-				if (currFilePos > readUntil) {
-					if (this.debug) {
-						System.out.printf("Read until offset=%d done, current pos=%d%n", readUntil, currFilePos);
-					}
-					break;
-				}
+		List<Data> window = new ArrayList<>();
+		for (MessageAddLogged subscription : visitor.subscriptions.values()) {
+			if (subscription.getRowBuffer().getRowCount() > 0) {
+				window.add(new Data(subscription));
+			}
+		}
+		window.sort(Comparator.comparing(Data::getName).thenComparing(Data::getMultiId));
+		return window;
+	}
 
-				try {
-					switch (header.getMsgType()) {
-					case ULogUtils.MSG_TYPE_INFO:
-						MessageInfo msgInfo = new MessageInfo(data, false);
-						this.msgInfoDict.put(msgInfo.getKey(), msgInfo.getValue());
-						this.msgInfoDictTypes.put(msgInfo.getKey(), msgInfo.getType());
-						break;
-
-					case ULogUtils.MSG_TYPE_INFO_MULTIPLE:
-						MessageInfo multipleMsgInfo = new MessageInfo(data, true);
-						addMessageInfoMultiple(multipleMsgInfo);
-						break;
-
-					case ULogUtils.MSG_TYPE_PARAMETER:
-						MessageInfo paramMsgInfo = new MessageInfo(data, false);
-						this.changedParameters.add(new ChangedParameter(this.lastTimestamp, paramMsgInfo.getKey(),
-								paramMsgInfo.getValue()));
-						break;
-
-					case ULogUtils.MSG_TYPE_PARAMETER_DEFAULT:
-						MessageParameterDefault paramDefault = new MessageParameterDefault(data);
-						addParameterDefault(paramDefault);
-						break;
-
-					case ULogUtils.MSG_TYPE_ADD_LOGGED_MSG:
-						MessageAddLogged msgAddLogged = new MessageAddLogged(data, this.messageFormats);
-						if (messageNameFilterList == null
-								|| messageNameFilterList.contains(msgAddLogged.getMessageName())) {
-							this.subscriptions.put(msgAddLogged.getMsgId(), msgAddLogged);
-						} else {
-							this.filteredMessageIds.add(msgAddLogged.getMsgId());
-						}
-						break;
-
-					case ULogUtils.MSG_TYPE_LOGGING:
-						MessageLogging msgLogging = new MessageLogging(data, header);
-
-						this.loggedMessages.add(msgLogging);
-						break;
-
-					case ULogUtils.MSG_TYPE_LOGGING_TAGGED:
-						MessageLoggingTagged msgLogTagged = new MessageLoggingTagged(data, header);
-						this.loggedMessagesTagged
-								.computeIfAbsent(String.valueOf(msgLogTagged.getTag()), k -> new ArrayList<>())
-								.add(msgLogTagged);
-						break;
-
-					case ULogUtils.MSG_TYPE_DATA:
-						boolean hasCorruption = msgData.initialize(data, header, this.subscriptions, this);
-						if (hasCorruption) {
-							this.fileCorrupt = true;
-						} else if (msgData.getTimestamp() > this.lastTimestamp) {
-							this.lastTimestamp = msgData.getTimestamp();
-						}
-						break;
-
-					case ULogUtils.MSG_TYPE_DROPOUT:
-						MessageDropout msgDropout = new MessageDropout(data, header, this.lastTimestamp);
-						dropouts.add(msgDropout);
-						break;
-
-					case ULogUtils.MSG_TYPE_SYNC:
-						break;
-
-					default:
-						if (this.debug) {
-							System.out.printf("Unknown message type: %d%n", header.getMsgType());
-							System.out.printf("File position: %d msg size: %d%n", currFilePos, header.getMsgSize());
-						}
-
-						if (this.checkPacketCorruption(header)) {
-							long newPos = currFilePos - 2 - header.getMsgSize();
-							this.fileHandle.seek(newPos);
-							currFilePos = this.fileHandle.getFilePointer();
-							if (this.hasSync) {
-								this.findSync(-1);
-							}
-						} else {
-							if (this.hasSync) {
-								this.findSync(header.getMsgSize());
-							}
-						}
-						break;
-					}
+	private static class WindowVisitor implements ULogVisitor {
+
+		private final long t0;
+		private final long t1;
+		private final ULogOffsetIndex offsetIndex;
+		private final long indexEnd;
+		private final Map<Integer, MessageAddLogged> subscriptions = new HashMap<>();
+		// Topics that had a row in this read, and the ones among them that went past t1
+		private final Set<Integer> seen = new HashSet<>();
+		private final Set<Integer> passed = new HashSet<>();
+		// Offset of the next last row of an open topic by the index, or -1 when it has to be found again
+		private long nextEnd = -1;
+		private ULogParser parser;
+
+		WindowVisitor(long t0, long t1, ULogOffsetIndex offsetIndex) {
+			this.t0 = t0;
+			this.t1 = t1;
+			this.offsetIndex = offsetIndex;
+			this.indexEnd = offsetIndex != null ? offsetIndex.getEndOffset() : -1;
+		}
 
-				} catch (Exception e) {
-					if (!this.fileCorrupt) {
-						System.err.println("File corruption detected while reading file data!" + e);
-						this.fileCorrupt = true;
-					}
-				}
-			}
+		@Override
+		public void onSubscription(MessageAddLogged subscription) {
+			this.subscriptions.put(subscription.getMsgId(), subscription);
+			this.nextEnd = -1;
+		}
 
-			for (int i = this.subscriptions.size() - 1; i >= 0; i--) {
-				MessageAddLogged value = this.subscriptions.remove(i);
+		// A topic is done once it has a row after t1 or, by the index, has no rows left ahead of the read position.
+		// Without the index, or past the part of the log it covers, only topics that have had a row are waited for.
+		@Override
+		public void onData(int msgId, ByteBuffer row, long timestamp) {
+			boolean passedNow = false;
+			if (timestamp > this.t1) {
+				passedNow = this.passed.add(msgId);
+			} else if (timestamp >= this.t0) {
+				this.subscriptions.get(msgId).appendRow(row);
+			}
+			this.seen.add(msgId);
 
-				if (value.getBuffer().size() > 0) {
-					this.dataList.add(new Data(value));
+			long position;
+			try {
+				position = this.parser.getPosition();
+			} catch (IOException e) {
+				return;
+			}
+			if (this.offsetIndex != null && position <= this.indexEnd) {
+				if (passedNow || position > this.nextEnd) {
+					this.nextEnd = findNextEnd(position);
 				}
+			} else if (passedNow && this.passed.size() == this.seen.size()) {
+				this.parser.stop();
 			}
+		}
 
-			this.dataList.sort(Comparator.comparing(Data::getName).thenComparing(Data::getMultiId));
-		} catch (IOException e) {
-			System.err.println("Error reading file: " + e.getMessage());
+		// Returns the smallest offset of a last row that is still ahead among the open topics, and stops the
+		// parse when there is none
+		private long findNextEnd(long position) {
+			long next = Long.MAX_VALUE;
+			for (int msgId : this.subscriptions.keySet()) {
+				int count = this.offsetIndex.getCount(msgId);
+				if (!this.passed.contains(msgId) && count > 0) {
+					long end = this.offsetIndex.getOffset(msgId, count - 1);
+					if (end >= position) {
+						next = Math.min(next, end);
+					}
+				}
+			}
+			if (next == Long.MAX_VALUE) {
+				this.parser.stop();
+			}
+			return next;
 		}
 	}
 
+	// Per topic message counts and first/last timestamps, collected by a metadata-only parse
+	public Map<Integer, ULogTopicStats> getTopicStats() {
+		return this.parser != null ? this.parser.getTopicStats() : Collections.emptyMap();
+	}
+
+	public ULogIndexFile getIndexFile() {
+		return this.indexFile;
+	}
+
 	public int[] getVersionInfo(String keyName) {
 		if (this.msgInfoDict.containsKey(keyName)) {
 			Object value = this.msgInfoDict.get(keyName);
@@ -1031,146 +1145,35 @@ public class ULogReader {
 	}
 
 	public boolean findSync(long lastNBytes) throws IOException {
-		boolean syncSeqFound = false;
-		long initialFilePosition = this.fileHandle.getFilePointer();
-		long currentFilePosition = initialFilePosition;
-
-		int searchChunkSize = 512;
-
-		if (lastNBytes != -1) {
-			currentFilePosition = Math.max(0, currentFilePosition - lastNBytes);
-			this.fileHandle.seek(currentFilePosition);
-			searchChunkSize = (int) Math.min(lastNBytes, 512);
-		}
-
-		byte[] chunk = new byte[searchChunkSize];
-		int bytesRead = this.fileHandle.read(chunk);
-
-		while (bytesRead >= ULogUtils.SYNC_BYTES.length) {
-			currentFilePosition += bytesRead;
-
-			int chunkIndex = findSyncInChunk(chunk);
-			if (chunkIndex >= 0) {
-				if (this.debug) {
-					System.out.printf("Found sync at %d%n", currentFilePosition - bytesRead + chunkIndex);
-				}
-				fileHandle.seek(currentFilePosition - bytesRead + chunkIndex + ULogUtils.SYNC_BYTES.length);
-				currentFilePosition = this.fileHandle.getFilePointer();
-				syncSeqFound = true;
-				break;
-			}
-
-			if (lastNBytes != -1) {
-				break;
-			}
-
-			this.fileHandle.seek(currentFilePosition - (ULogUtils.SYNC_BYTES.length - 1));
-			currentFilePosition = this.fileHandle.getFilePointer();
-			bytesRead = this.fileHandle.read(chunk);
-		}
-
-		if (!syncSeqFound) {
-			this.fileHandle.seek(initialFilePosition);
-			currentFilePosition = this.fileHandle.getFilePointer();
-			if (lastNBytes == -1) {
-				this.hasSync = false;
-				if (this.debug) {
-					System.out.printf("Failed to find sync in file from %d%n", initialFilePosition);
-				}
-			} else {
-				if (this.debug) {
-					System.out.printf("Failed to find sync in (%d, %d)%n", initialFilePosition - lastNBytes,
-							initialFilePosition);
-				}
-			}
-		} else {
-			this.fileCorrupt = true;
-		}
-
-		return syncSeqFound;
-	}
-
-	private int findSyncInChunk(byte[] chunk) {
-		for (int i = 0; i <= chunk.length - ULogUtils.SYNC_BYTES.length; i++) {
-			if (Arrays.equals(Arrays.copyOfRange(chunk, i, i + ULogUtils.SYNC_BYTES.length), ULogUtils.SYNC_BYTES)) {
-				return i;
-			}
-		}
-		return -1;
+		return this.parser.findSync(lastNBytes);
 	}
 
-	private boolean checkPacketCorruption(MessageHeader header) {
-		boolean dataCorrupt = false;
-
-		if (header.getMsgType() == 0 || header.getMsgSize() == 0 || header.getMsgSize() > 10000) {
-			if (!this.fileCorrupt && this.debug) {
-				System.out.println("File corruption detected");
-			}
-			dataCorrupt = true;
-			this.fileCorrupt = true;
-		}
-
-		return dataCorrupt;
+	// Corrupted ranges that were skipped while parsing and where parsing resynced after them
+	public ULogRecoveryReport getRecoveryReport() {
+		return this.parser != null ? this.parser.getRecoveryReport() : new ULogRecoveryReport();
 	}
 
 	public void ulog2csv(List<Data> dataList, String outputFilePrefix, long time_s, long time_e, String delimiter) {
-		for (Data d : dataList) {
-			String sanitizedFileName = d.getName().replace("/", "_");
-			String filePath = String.format("%s_%s_%d.csv", outputFilePrefix, sanitizedFileName, d.getMultiId());
-
-			Map<String, List<Object>> data = d.getData();
-			if (!data.containsKey("timestamp") || data.get("timestamp").isEmpty()) {
-				System.err.println("Skipping " + filePath + " - No timestamp data found!");
-				continue;
-			}
-
-			List<Object> timestamps = data.get("timestamp");
-			int time_s_i = (time_s > 0) ? getIndexForTimestamp(timestamps, time_s * 1_000_000) : 0;
-			int time_e_i = (time_e > 0 && time_e != Long.MAX_VALUE)
-					? getIndexForTimestamp(timestamps, time_e * 1_000_000)
-					: timestamps.size();
-
-			if (time_s_i >= time_e_i) {
-				System.err.println("Skipping " + filePath + " - Invalid timestamp range!");
-				continue;
-			}
+		exportCsv(dataList, outputFilePrefix, time_s, time_e, delimiter);
+	}
 
-			try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath))) {
-				List<String> dataKeys = new ArrayList<>();
-				for (FieldData f : d.getFieldData()) {
-					dataKeys.add(f.getFieldName());
-				}
-				dataKeys.remove("timestamp");
-				dataKeys.add(0, "timestamp");
-				writer.write(String.join(delimiter, dataKeys));
-				writer.newLine();
-				for (int i = time_s_i; i < time_e_i; i++) {
-					StringBuilder row = new StringBuilder();
-					for (int k = 0; k < dataKeys.size(); k++) {
-						List<Object> values = data.get(dataKeys.get(k));
-						row.append((i < values.size()) ? values.get(i).toString() : "");
-						if (k < dataKeys.size() - 1) {
-							row.append(delimiter);
-						}
-					}
-					writer.write(row.toString());
-					writer.newLine();
-				}
+	// Same as above with the number of threads formatting rows; topics and blocks of rows of large topics are
+	// formatted in parallel, while each file is still written in order
+	public void ulog2csv(List<Data> dataList, String outputFilePrefix, long time_s, long time_e, String delimiter,
+			int threads) {
+		exportCsv(dataList, outputFilePrefix, time_s, time_e, delimiter, threads);
+	}
 
-				System.out.println("CSV file written successfully: " + filePath);
-			} catch (IOException e) {
-				System.err.println("Error writing CSV: " + e.getMessage());
-			}
-		}
+	// Same as ulog2csv, but returns the number of CSV files that could not be written
+	public int exportCsv(List<Data> dataList, String outputFilePrefix, long time_s, long time_e, String delimiter) {
+		return exportCsv(dataList, outputFilePrefix, time_s, time_e, delimiter,
+				Runtime.getRuntime().availableProcessors());
 	}
 
-	private int getIndexForTimestamp(List<Object> timestamps, long targetTime) {
-		for (int i = 0; i < timestamps.size(); i++) {
-			if (Long.parseLong(timestamps.get(i).toString()) >= targetTime) {
-				return i;
-			}
-		}
-		return timestamps.size();
+	public int exportCsv(List<Data> dataList, String outputFilePrefix, long time_s, long time_e, String delimiter,
+			int threads) {
+		return new ULogCsvExporter().setDelimiter(delimiter).setThreads(threads).export(dataList, outputFilePrefix,
+				time_s, time_e);
 	}
 
 }
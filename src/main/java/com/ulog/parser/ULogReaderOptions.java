@@ -0,0 +1,139 @@
+package com.ulog.parser;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+public class ULogReaderOptions {
+
+	private List<String> messageNameFilterList = null;
+	private Map<String, List<String>> projection = null;
+	private boolean disableStrExceptions = true;
+	private boolean parseHeaderOnly = false;
+	private boolean memoryMapped = false;
+	private Executor decodeExecutor = null;
+	private int decodeTaskRows = 1 << 16;
+	private boolean indexedDecode = false;
+	private boolean sidecarIndex = false;
+	private boolean metadataOnly = false;
+
+	// Copy that callers can adjust without changing these options
+	ULogReaderOptions copy() {
+		ULogReaderOptions copy = new ULogReaderOptions();
+		copy.messageNameFilterList = this.messageNameFilterList;
+		copy.projection = this.projection;
+		copy.disableStrExceptions = this.disableStrExceptions;
+		copy.parseHeaderOnly = this.parseHeaderOnly;
+		copy.memoryMapped = this.memoryMapped;
+		copy.decodeExecutor = this.decodeExecutor;
+		copy.decodeTaskRows = this.decodeTaskRows;
+		copy.indexedDecode = this.indexedDecode;
+		copy.sidecarIndex = this.sidecarIndex;
+		copy.metadataOnly = this.metadataOnly;
+		return copy;
+	}
+
+	public List<String> getMessageNameFilterList() {
+		return this.messageNameFilterList;
+	}
+
+	public ULogReaderOptions setMessageNameFilterList(List<String> messageNameFilterList) {
+		this.messageNameFilterList = messageNameFilterList;
+		return this;
+	}
+
+	public Map<String, List<String>> getProjection() {
+		return this.projection;
+	}
+
+	// Per-topic field patterns, e.g. {"sensor_combined": ["timestamp", "gyro_rad[0..2]"], "vehicle_attitude":
+	// ["q[*]"]}. Only the selected fields of those topics are stored and decoded; other topics keep all fields.
+	public ULogReaderOptions setProjection(Map<String, List<String>> projection) {
+		this.projection = projection;
+		return this;
+	}
+
+	public boolean isDisableStrExceptions() {
+		return this.disableStrExceptions;
+	}
+
+	public ULogReaderOptions setDisableStrExceptions(boolean disableStrExceptions) {
+		this.disableStrExceptions = disableStrExceptions;
+		return this;
+	}
+
+	public boolean isParseHeaderOnly() {
+		return this.parseHeaderOnly;
+	}
+
+	public ULogReaderOptions setParseHeaderOnly(boolean parseHeaderOnly) {
+		this.parseHeaderOnly = parseHeaderOnly;
+		return this;
+	}
+
+	public boolean isMemoryMapped() {
+		return this.memoryMapped;
+	}
+
+	public ULogReaderOptions setMemoryMapped(boolean memoryMapped) {
+		this.memoryMapped = memoryMapped;
+		return this;
+	}
+
+	public Executor getDecodeExecutor() {
+		return this.decodeExecutor;
+	}
+
+	// When set, all data columns are decoded on this executor at the end of loading instead of lazily on first
+	// access, e.g. a ForkJoinPool sized to the machine.
+	public ULogReaderOptions setDecodeExecutor(Executor decodeExecutor) {
+		this.decodeExecutor = decodeExecutor;
+		return this;
+	}
+
+	public boolean isIndexedDecode() {
+		return this.indexedDecode;
+	}
+
+	// Parses in two phases: an offset index pass over all messages, then a parallel per-topic read of the data
+	// rows on the decode executor (the common ForkJoinPool when none is set).
+	public ULogReaderOptions setIndexedDecode(boolean indexedDecode) {
+		this.indexedDecode = indexedDecode;
+		return this;
+	}
+
+	public boolean isMetadataOnly() {
+		return this.metadataOnly;
+	}
+
+	// Parses everything except data payloads: D messages are only counted per topic with their first and last
+	// timestamps (ULogReader.getTopicStats), and no Data is created.
+	public ULogReaderOptions setMetadataOnly(boolean metadataOnly) {
+		this.metadataOnly = metadataOnly;
+		return this;
+	}
+
+	public boolean isSidecarIndex() {
+		return this.sidecarIndex;
+	}
+
+	// Opens logs through a <log>.idx sidecar when one matches the file, and writes one after a full parse
+	// otherwise. With a valid sidecar only the definitions and the rows of topics that are accessed are read.
+	// Ignored together with a projection, which can leave out whole topics.
+	public ULogReaderOptions setSidecarIndex(boolean sidecarIndex) {
+		this.sidecarIndex = sidecarIndex;
+		return this;
+	}
+
+	public int getDecodeTaskRows() {
+		return this.decodeTaskRows;
+	}
+
+	public ULogReaderOptions setDecodeTaskRows(int decodeTaskRows) {
+		if (decodeTaskRows <= 0) {
+			throw new IllegalArgumentException("decodeTaskRows must be positive");
+		}
+		this.decodeTaskRows = decodeTaskRows;
+		return this;
+	}
+}
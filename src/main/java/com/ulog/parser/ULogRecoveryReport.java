@@ -0,0 +1,98 @@
+package com.ulog.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// What the parser skipped to get back in sync after corruption: every corrupted byte range with the offset it
+// resynced at, or -1 when no further sync was found and the rest of the log was ignored.
+public class ULogRecoveryReport {
+
+	public static class Range {
+
+		private final long start;
+		private final long end;
+		private final long resyncOffset;
+
+		Range(long start, long end, long resyncOffset) {
+			this.start = start;
+			this.end = end;
+			this.resyncOffset = resyncOffset;
+		}
+
+		public long getStart() {
+			return this.start;
+		}
+
+		public long getEnd() {
+			return this.end;
+		}
+
+		public long getLength() {
+			return this.end - this.start;
+		}
+
+		// Offset of the first message after the sync sequence, or -1 when none was found
+		public long getResyncOffset() {
+			return this.resyncOffset;
+		}
+
+		public boolean isRecovered() {
+			return this.resyncOffset >= 0;
+		}
+
+		@Override
+		public String toString() {
+			return "[" + this.start + ", " + this.end + ") "
+					+ (isRecovered() ? "resynced at " + this.resyncOffset : "not recovered");
+		}
+	}
+
+	private final List<Range> ranges = new ArrayList<>();
+	private long bytesSkipped = 0;
+
+	// A search that goes back over a range already reported and ends at the same sync only widens that range
+	void add(long start, long end, long resyncOffset) {
+		Range last = this.ranges.isEmpty() ? null : this.ranges.get(this.ranges.size() - 1);
+		if (last != null && last.resyncOffset == resyncOffset && resyncOffset >= 0 && start < last.end) {
+			this.ranges.set(this.ranges.size() - 1, new Range(Math.min(start, last.start), last.end, resyncOffset));
+			this.bytesSkipped += Math.max(0, last.start - start);
+			return;
+		}
+		this.ranges.add(new Range(start, end, resyncOffset));
+		this.bytesSkipped += Math.max(0, end - start);
+	}
+
+	public List<Range> getCorruptedRanges() {
+		return Collections.unmodifiableList(this.ranges);
+	}
+
+	public List<Long> getResyncOffsets() {
+		List<Long> offsets = new ArrayList<>();
+		for (Range range : this.ranges) {
+			if (range.isRecovered()) {
+				offsets.add(range.getResyncOffset());
+			}
+		}
+		return offsets;
+	}
+
+	public long getBytesSkipped() {
+		return this.bytesSkipped;
+	}
+
+	public boolean isEmpty() {
+		return this.ranges.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder report = new StringBuilder();
+		report.append(this.ranges.size()).append(" corrupted ranges, ").append(this.bytesSkipped)
+				.append(" bytes skipped");
+		for (Range range : this.ranges) {
+			report.append(System.lineSeparator()).append("  ").append(range);
+		}
+		return report.toString();
+	}
+}
@@ -0,0 +1,151 @@
+package com.ulog.parser;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Finds the next sync sequence after corruption. The input is read in large windows and searched eight bytes at a
+// time for the first sync byte; only those candidates are compared as a whole. A sync is only accepted when it is followed by a plausible message header, so sync bytes
+// that happen to appear inside data do not end the search.
+public class ULogResync {
+
+	static final int WINDOW_SIZE = 1 << 20;
+	// Memory-mapped inputs only return views of the mapping for reads up to their segment overlap, and copy
+	// larger ones, so their windows are kept that small
+	static final int MAPPED_WINDOW_SIZE = ULogMappedInput.SEGMENT_OVERLAP - 3;
+
+	private static final long SYNC = ByteBuffer.wrap(ULogUtils.SYNC_BYTES).order(ByteOrder.LITTLE_ENDIAN).getLong();
+	private static final long FIRST_BYTE = 0x0101010101010101L * (ULogUtils.SYNC_BYTES[0] & 0xFF);
+	private static final long LOW_BITS = 0x0101010101010101L;
+	private static final long HIGH_BITS = 0x8080808080808080L;
+	// A sync is followed by a three byte header, so consecutive windows overlap by this much
+	private static final int OVERLAP = ULogUtils.SYNC_BYTES.length + 3 - 1;
+
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.out.println("Usage: java -cp ulog-reader.jar com.ulog.parser.ULogResync <input_file.ulg>...");
+			return;
+		}
+		ULogUtils.disableStrExceptions = true;
+		for (String logFile : args) {
+			// a metadata-only parse goes through the whole log, including every resync, without decoding rows
+			try (ULogInput input = ULogInflatingChannel.isGzip(logFile) ? ULogInflatingChannel.open(logFile)
+					: ULogParser.openInput(new RandomAccessFile(logFile, "r"), true)) {
+				ULogParser parser = new ULogParser(input, new ULogVisitor() {
+				});
+				parser.setMetadataOnly(true);
+				parser.parse(false);
+				System.out.println(logFile + ": " + parser.getRecoveryReport());
+			} catch (IOException | RuntimeException e) {
+				System.err.println(logFile + ": " + e);
+			}
+		}
+	}
+
+	private ULogResync() {
+	}
+
+	// Searches at most maxBytes bytes (all remaining bytes when negative) from the current position of input.
+	// Returns the offset just past the sync sequence with the input positioned there, or -1 with the input
+	// positioned after the searched bytes.
+	static long find(ULogInput input, long maxBytes) throws IOException {
+		long windowStart = input.position();
+		long end = maxBytes < 0 ? Long.MAX_VALUE : windowStart + maxBytes;
+		int syncLength = ULogUtils.SYNC_BYTES.length;
+		int windowSize = input instanceof ULogMappedInput ? MAPPED_WINDOW_SIZE : WINDOW_SIZE;
+
+		while (windowStart < end) {
+			input.seek(windowStart);
+			// read a little past the searched range, to validate the header after a sync near its end
+			int length = (int) Math.min(windowSize, end - windowStart) + 3;
+			ByteBuffer window = input.read(length);
+			int base = window.position();
+			int available = window.remaining();
+			boolean endOfInput = available < length;
+			int searchEnd = (int) Math.min(available - syncLength, end - windowStart - 1);
+
+			int i = 0;
+			while (i <= searchEnd) {
+				int candidate = nextCandidate(window, base, i, searchEnd);
+				if (candidate < 0) {
+					break;
+				}
+				if (window.getLong(base + candidate) == SYNC) {
+					int next = candidate + syncLength;
+					if (next + 3 <= available) {
+						if (isPlausibleHeader(window, base + next)) {
+							input.seek(windowStart + next);
+							return windowStart + next;
+						}
+					} else if (endOfInput) {
+						// nothing follows the sync yet
+						input.seek(windowStart + next);
+						return windowStart + next;
+					} else {
+						// validated in the next window, which starts before this candidate
+						break;
+					}
+				}
+				i = candidate + 1;
+			}
+
+			if (endOfInput || available <= OVERLAP) {
+				input.seek(windowStart + available);
+				break;
+			}
+			windowStart += available - OVERLAP;
+		}
+		if (end != Long.MAX_VALUE && input.position() > end) {
+			input.seek(end);
+		}
+		return -1;
+	}
+
+	// Position in [from, to] of the next byte equal to the first sync byte, or -1. Eight bytes are tested per
+	// step with the usual zero-byte trick on the XOR with the repeated first byte.
+	private static int nextCandidate(ByteBuffer window, int base, int from, int to) {
+		int i = from;
+		for (; i + 8 <= to + 1; i += 8) {
+			long word = window.getLong(base + i) ^ FIRST_BYTE;
+			long found = (word - LOW_BITS) & ~word & HIGH_BITS;
+			if (found != 0) {
+				return i + (Long.numberOfTrailingZeros(found) >>> 3);
+			}
+		}
+		byte first = ULogUtils.SYNC_BYTES[0];
+		for (; i <= to; i++) {
+			if (window.get(base + i) == first) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	// Same bounds as the corruption check of the parser, and the type must be one the format defines
+	static boolean isPlausibleHeader(ByteBuffer buffer, int offset) {
+		int msgSize = Short.toUnsignedInt(buffer.getShort(offset));
+		int msgType = Byte.toUnsignedInt(buffer.get(offset + 2));
+		if (msgSize == 0 || msgSize > 10000) {
+			return false;
+		}
+		switch (msgType) {
+		case ULogUtils.MSG_TYPE_FORMAT:
+		case ULogUtils.MSG_TYPE_DATA:
+		case ULogUtils.MSG_TYPE_INFO:
+		case ULogUtils.MSG_TYPE_INFO_MULTIPLE:
+		case ULogUtils.MSG_TYPE_PARAMETER:
+		case ULogUtils.MSG_TYPE_PARAMETER_DEFAULT:
+		case ULogUtils.MSG_TYPE_ADD_LOGGED_MSG:
+		case ULogUtils.MSG_TYPE_REMOVE_LOGGED_MSG:
+		case ULogUtils.MSG_TYPE_SYNC:
+		case ULogUtils.MSG_TYPE_DROPOUT:
+		case ULogUtils.MSG_TYPE_LOGGING:
+		case ULogUtils.MSG_TYPE_LOGGING_TAGGED:
+		case ULogUtils.MSG_TYPE_FLAG_BITS:
+			return true;
+		default:
+			return false;
+		}
+	}
+}
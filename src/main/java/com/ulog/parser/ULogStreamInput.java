@@ -0,0 +1,133 @@
+package com.ulog.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+// Forward-only input over a stream or channel. The last RETAINED_BYTES before the read position are kept, which
+// covers the short backward seeks of the parser (re-reading a message header, resync and appended data
+// offsets). Seeking back further fails, and positional reads only work inside the retained bytes.
+public class ULogStreamInput implements ULogInput {
+
+	static final int RETAINED_BYTES = 1 << 17;
+
+	private final ReadableByteChannel channel;
+	private byte[] buffer = new byte[RETAINED_BYTES * 2];
+	private long bufferStart = 0;
+	private int bufferLength = 0;
+	private long position = 0;
+	private boolean endOfStream = false;
+
+	public ULogStreamInput(InputStream stream) {
+		this(Channels.newChannel(stream));
+	}
+
+	public ULogStreamInput(ReadableByteChannel channel) {
+		this.channel = channel;
+	}
+
+	// The length of a stream is not known up front
+	@Override
+	public long length() {
+		return Long.MAX_VALUE;
+	}
+
+	@Override
+	public boolean isSeekable() {
+		return false;
+	}
+
+	@Override
+	public long position() {
+		return this.position;
+	}
+
+	@Override
+	public void seek(long position) throws IOException {
+		if (position < this.bufferStart) {
+			throw new IOException("Cannot seek back to " + position + " on a forward-only input (earliest "
+					+ this.bufferStart + ")");
+		}
+		this.position = position;
+	}
+
+	@Override
+	public ByteBuffer read(int length) throws IOException {
+		fill(this.position + length);
+		int start = (int) (this.position - this.bufferStart);
+		int available = Math.max(0, Math.min(length, this.bufferLength - start));
+		this.position += available;
+		return ByteBuffer.wrap(this.buffer, start, available).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	@Override
+	public ByteBuffer read(long position, int length) throws IOException {
+		if (position < this.bufferStart || position + length > this.bufferStart + this.bufferLength) {
+			throw new IOException("Positional reads outside the retained bytes are not supported on a forward-only input");
+		}
+		byte[] data = new byte[length];
+		System.arraycopy(this.buffer, (int) (position - this.bufferStart), data, 0, length);
+		return ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	// Makes the buffer hold [position, end) as far as the stream allows, keeping RETAINED_BYTES before position
+	private void fill(long end) throws IOException {
+		long bufferEnd = this.bufferStart + this.bufferLength;
+		if (end <= bufferEnd || this.endOfStream) {
+			return;
+		}
+
+		long keepFrom = Math.max(this.bufferStart, this.position - RETAINED_BYTES);
+		if (keepFrom >= bufferEnd) {
+			this.bufferStart = bufferEnd;
+			this.bufferLength = 0;
+			skip(keepFrom - bufferEnd);
+		} else {
+			int drop = (int) (keepFrom - this.bufferStart);
+			System.arraycopy(this.buffer, drop, this.buffer, 0, this.bufferLength - drop);
+			this.bufferStart = keepFrom;
+			this.bufferLength -= drop;
+		}
+
+		long needed = end - this.bufferStart;
+		if (needed > this.buffer.length) {
+			byte[] grown = new byte[(int) Math.max(needed, this.buffer.length * 2L)];
+			System.arraycopy(this.buffer, 0, grown, 0, this.bufferLength);
+			this.buffer = grown;
+		}
+
+		// read ahead as far as the buffer allows, so small reads do not each go to the stream
+		ByteBuffer target = ByteBuffer.wrap(this.buffer, this.bufferLength, this.buffer.length - this.bufferLength);
+		while (this.bufferStart + this.bufferLength < end) {
+			int bytesRead = this.channel.read(target);
+			if (bytesRead == -1) {
+				this.endOfStream = true;
+				break;
+			}
+			this.bufferLength += bytesRead;
+		}
+	}
+
+	private void skip(long count) throws IOException {
+		ByteBuffer scratch = ByteBuffer.wrap(this.buffer);
+		while (count > 0) {
+			scratch.clear();
+			scratch.limit((int) Math.min(count, scratch.capacity()));
+			int bytesRead = this.channel.read(scratch);
+			if (bytesRead == -1) {
+				this.endOfStream = true;
+				break;
+			}
+			count -= bytesRead;
+			this.bufferStart += bytesRead;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+}
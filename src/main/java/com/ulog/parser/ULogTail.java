@@ -0,0 +1,259 @@
+package com.ulog.parser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Follows a log that is still being written. The header and definitions are parsed once; after that the data
+// section is read again every poll interval, starting at the first message that was not complete before, and
+// every message is passed to the listeners. A listener therefore sees a new sample at most about one poll
+// interval after it was written. Listeners are called from the thread running the tail.
+public class ULogTail implements ULogVisitor, Closeable {
+
+	private final String logFile;
+	private final List<ULogVisitor> listeners = new CopyOnWriteArrayList<>();
+	private long pollIntervalMs = 100;
+	private long idleTimeoutMs = 0;
+	private ULogParser parser;
+	private ULogInput input;
+	private Thread thread;
+	private volatile boolean stopped = false;
+
+	public ULogTail(String logFile) {
+		this.logFile = logFile;
+	}
+
+	public ULogTail addListener(ULogVisitor listener) {
+		this.listeners.add(listener);
+		return this;
+	}
+
+	public ULogTail removeListener(ULogVisitor listener) {
+		this.listeners.remove(listener);
+		return this;
+	}
+
+	public ULogTail setPollInterval(long pollIntervalMs) {
+		this.pollIntervalMs = pollIntervalMs;
+		return this;
+	}
+
+	// Ends the tail once the log has not grown for this long; 0 follows it until stop() is called
+	public ULogTail setIdleTimeout(long idleTimeoutMs) {
+		this.idleTimeoutMs = idleTimeoutMs;
+		return this;
+	}
+
+	public ULogParser getParser() {
+		return this.parser;
+	}
+
+	// Runs the tail on a daemon thread
+	public ULogTail start() {
+		this.thread = new Thread(() -> {
+			try {
+				run();
+			} catch (IOException e) {
+				System.err.println("Error following " + this.logFile + ": " + e.getMessage());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, "ulog-tail");
+		this.thread.setDaemon(true);
+		this.thread.start();
+		return this;
+	}
+
+	// Follows the log on the calling thread until stop() is called or the idle timeout passes. onEnd is sent to
+	// the listeners when it returns normally.
+	public void run() throws IOException, InterruptedException {
+		// The logger may not have created the file yet
+		long lastGrowth = System.currentTimeMillis();
+		while (!new File(this.logFile).isFile()) {
+			if (this.stopped || isIdle(lastGrowth)) {
+				return;
+			}
+			Thread.sleep(this.pollIntervalMs);
+		}
+
+		this.input = new ULogFileInput(new RandomAccessFile(this.logFile, "r"));
+		try {
+			while (!hasDefinitions()) {
+				if (this.stopped || isIdle(lastGrowth)) {
+					return;
+				}
+				Thread.sleep(this.pollIntervalMs);
+			}
+
+			this.parser = new ULogParser(this.input, this);
+			this.parser.readFileHeader();
+			this.parser.readFileDefinitions();
+
+			long consumed = this.input.position();
+			while (!this.stopped) {
+				this.parser.readFileData(null);
+				if (this.input.position() > consumed) {
+					consumed = this.input.position();
+					lastGrowth = System.currentTimeMillis();
+				} else if (isIdle(lastGrowth)) {
+					break;
+				}
+				Thread.sleep(this.pollIntervalMs);
+			}
+			onEnd();
+		} finally {
+			this.input.close();
+		}
+	}
+
+	private boolean isIdle(long lastGrowth) {
+		return this.idleTimeoutMs > 0 && System.currentTimeMillis() - lastGrowth >= this.idleTimeoutMs;
+	}
+
+	// The definitions section ends at the first subscription or logged string. Until the log contains one,
+	// the definitions may still be incomplete and are not parsed yet.
+	private boolean hasDefinitions() throws IOException {
+		long position = 16;
+		while (true) {
+			ByteBuffer view = this.input.read(position, 3);
+			if (view.remaining() < 3) {
+				return false;
+			}
+			MessageHeader header = new MessageHeader();
+			header.initialize(view);
+			if (header.getMsgType() == ULogUtils.MSG_TYPE_ADD_LOGGED_MSG
+					|| header.getMsgType() == ULogUtils.MSG_TYPE_LOGGING
+					|| header.getMsgType() == ULogUtils.MSG_TYPE_LOGGING_TAGGED) {
+				return true;
+			}
+			position += 3 + header.getMsgSize();
+		}
+	}
+
+	// Ends the tail after the message that is being handled
+	public void stop() {
+		this.stopped = true;
+		if (this.parser != null) {
+			this.parser.stop();
+		}
+	}
+
+	// Stops the tail and waits for its thread to end
+	@Override
+	public void close() throws IOException {
+		stop();
+		if (this.thread != null) {
+			try {
+				this.thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	@Override
+	public void onHeader(int fileVersion, long startTimestamp) {
+		for (ULogVisitor listener : this.listeners) {
+			listener.onHeader(fileVersion, startTimestamp);
+		}
+	}
+
+	@Override
+	public void onFlagBits(MessageFlagBits flagBits) {
+		for (ULogVisitor listener : this.listeners) {
+			listener.onFlagBits(flagBits);
+		}
+	}
+
+	@Override
+	public void onInfo(MessageInfo info) {
+		for (ULogVisitor listener : this.listeners) {
+			listener.onInfo(info);
+		}
+	}
+
+	@Override
+	public void onInfoMultiple(MessageInfo info) {
+		for (ULogVisitor listener : this.listeners) {
+			listener.onInfoMultiple(info);
+		}
+	}
+
+	@Override
+	public void onFormat(MessageFormat format) {
+		for (ULogVisitor listener : this.listeners) {
+			listener.onFormat(format);
+		}
+	}
+
+	@Override
+	public void onParameter(MessageInfo parameter) {
+		for (ULogVisitor listener : this.listeners) {
+			listener.onParameter(parameter);
+		}
+	}
+
+	@Override
+	public void onParameterDefault(MessageParameterDefault parameter) {
+		for (ULogVisitor listener : this.listeners) {
+			listener.onParameterDefault(parameter);
+		}
+	}
+
+	@Override
+	public void onSubscription(MessageAddLogged subscription) {
+		for (ULogVisitor listener : this.listeners) {
+			listener.onSubscription(subscription);
+		}
+	}
+
+	@Override
+	public void onData(int msgId, ByteBuffer row, long timestamp) {
+		int position = row.position();
+		int limit = row.limit();
+		for (ULogVisitor listener : this.listeners) {
+			row.limit(limit);
+			row.position(position);
+			listener.onData(msgId, row, timestamp);
+		}
+	}
+
+	@Override
+	public void onLogging(MessageLogging message) {
+		for (ULogVisitor listener : this.listeners) {
+			listener.onLogging(message);
+		}
+	}
+
+	@Override
+	public void onLoggingTagged(MessageLoggingTagged message) {
+		for (ULogVisitor listener : this.listeners) {
+			listener.onLoggingTagged(message);
+		}
+	}
+
+	@Override
+	public void onParameterChange(ChangedParameter parameter) {
+		for (ULogVisitor listener : this.listeners) {
+			listener.onParameterChange(parameter);
+		}
+	}
+
+	@Override
+	public void onDropout(MessageDropout dropout) {
+		for (ULogVisitor listener : this.listeners) {
+			listener.onDropout(dropout);
+		}
+	}
+
+	@Override
+	public void onEnd() {
+		for (ULogVisitor listener : this.listeners) {
+			listener.onEnd();
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package com.ulog.parser;
+
+public class ULogTopicStats {
+
+	private final int msgId;
+	private final String name;
+	private final byte multiId;
+	private int count = 0;
+	private long firstTimestamp = 0;
+	private long lastTimestamp = 0;
+
+	public ULogTopicStats(MessageAddLogged subscription) {
+		this.msgId = subscription.getMsgId();
+		this.name = subscription.getMessageName();
+		this.multiId = subscription.getMultiId();
+	}
+
+	void add(long timestamp) {
+		if (this.count == 0) {
+			this.firstTimestamp = timestamp;
+		}
+		this.lastTimestamp = timestamp;
+		this.count++;
+	}
+
+	public int getMsgId() {
+		return this.msgId;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public byte getMultiId() {
+		return this.multiId;
+	}
+
+	public int getCount() {
+		return this.count;
+	}
+
+	public long getFirstTimestamp() {
+		return this.firstTimestamp;
+	}
+
+	public long getLastTimestamp() {
+		return this.lastTimestamp;
+	}
+
+	@Override
+	public String toString() {
+		return "ULogTopicStats{" + "name='" + this.name + '\'' + ", multiId=" + this.multiId + ", count=" + this.count
+				+ ", firstTimestamp=" + this.firstTimestamp + ", lastTimestamp=" + this.lastTimestamp + '}';
+	}
+}
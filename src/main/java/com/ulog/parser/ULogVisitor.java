@@ -0,0 +1,50 @@
+package com.ulog.parser;
+
+import java.nio.ByteBuffer;
+
+public interface ULogVisitor {
+
+	default void onHeader(int fileVersion, long startTimestamp) {
+	}
+
+	default void onFlagBits(MessageFlagBits flagBits) {
+	}
+
+	default void onInfo(MessageInfo info) {
+	}
+
+	default void onInfoMultiple(MessageInfo info) {
+	}
+
+	default void onFormat(MessageFormat format) {
+	}
+
+	default void onParameter(MessageInfo parameter) {
+	}
+
+	default void onParameterDefault(MessageParameterDefault parameter) {
+	}
+
+	default void onSubscription(MessageAddLogged subscription) {
+	}
+
+	// row holds exactly one item of the subscription (without the msg id) between position and limit, in
+	// little-endian order. It is only valid for the duration of the call.
+	default void onData(int msgId, ByteBuffer row, long timestamp) {
+	}
+
+	default void onLogging(MessageLogging message) {
+	}
+
+	default void onLoggingTagged(MessageLoggingTagged message) {
+	}
+
+	default void onParameterChange(ChangedParameter parameter) {
+	}
+
+	default void onDropout(MessageDropout dropout) {
+	}
+
+	default void onEnd() {
+	}
+}